@@ -0,0 +1,23 @@
+package com.scanner.project;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Deterministic KAY programs for the benchmarks: roughly kilobytes of
+// source whose if/while blocks nest up to depth levels deep.
+
+final class BenchmarkSources {
+
+    private BenchmarkSources() {
+    }
+
+    static ByteBuffer program(int kilobytes, int depth) {
+        String text = new KayGenerator(42)
+                .declarations(24)
+                .nesting(depth)
+                .expressionDepth(4)
+                .targetBytes(kilobytes * 1024L)
+                .generate();
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,46 @@
+package com.scanner.project;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// Program.display() over an already parsed tree, both as a String and
+// appended to a reused StringBuilder. The rendering is several times the
+// size of the source, which bounds the largest input.
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class DisplayBenchmark {
+
+    @Param({ "1", "1024", "16384" })
+    public int kilobytes;
+
+    @Param({ "1", "8" })
+    public int depth;
+
+    private Program program;
+    private StringBuilder out;
+
+    @Setup
+    public void setup() {
+        program = new ConcreteSyntax(new TokenStream(BenchmarkSources.program(kilobytes, depth))).program();
+        out = new StringBuilder();
+    }
+
+    @Benchmark
+    public String display() {
+        return program.display();
+    }
+
+    @Benchmark
+    public int append() throws IOException {
+        out.setLength(0);
+        program.display(out);
+        return out.length();
+    }
+}
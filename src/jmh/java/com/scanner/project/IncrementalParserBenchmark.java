@@ -0,0 +1,53 @@
+package com.scanner.project;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// One keystroke in the middle of a large program: IncrementalParser
+// against parsing the whole source again
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IncrementalParserBenchmark {
+
+    @Param({ "64", "512" })
+    public int kilobytes;
+
+    private String text;
+    private IncrementalParser parser;
+    private int offset;
+    private boolean typed;
+
+    @Setup
+    public void setup() {
+        text = StandardCharsets.UTF_8.decode(BenchmarkSources.program(kilobytes, 1)).toString();
+        parser = new IncrementalParser(text);
+        // Just before the ';' of an assignment half way through
+        offset = text.indexOf(";", text.length() / 2);
+    }
+
+    // Types and deletes a space, alternately
+    @Benchmark
+    public boolean edit() {
+        typed = !typed;
+        return typed ? parser.edit(offset, 0, " ") : parser.edit(offset, 1, "");
+    }
+
+    // A keystroke followed by asking for the tree, which settles its spans
+    @Benchmark
+    public Program editAndProgram() {
+        edit();
+        return parser.program();
+    }
+
+    @Benchmark
+    public Program full() {
+        return new ConcreteSyntax(KaySource.of(text)).program();
+    }
+}
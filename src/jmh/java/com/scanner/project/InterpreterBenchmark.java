@@ -0,0 +1,75 @@
+package com.scanner.project;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// Execution speed on a loop-heavy program: two nested loops of n
+// iterations each around arithmetic, comparisons and boolean operators.
+// interpret walks the tree, vm runs the lowered Bytecode on KayVM and
+// compiled runs the KayCompiler class; lowering and compilation happen
+// once in setup.
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InterpreterBenchmark {
+
+    static final String LOOPS = "main {\n"
+            + "    integer i, j, n, sum, t;\n"
+            + "    bool odd, big;\n"
+            + "    n := %d;\n"
+            + "    i := 0;\n"
+            + "    while (i < n) {\n"
+            + "        j := 0;\n"
+            + "        while (j < n) {\n"
+            + "            t := (i * j) / 7;\n"
+            + "            sum := sum + t - (j * 3);\n"
+            + "            odd := ((t / 2) * 2) != t;\n"
+            + "            big := (sum > 100000) || odd;\n"
+            + "            if (big && (sum > 0)) {\n"
+            + "                sum := sum - 100000;\n"
+            + "            }\n"
+            + "            j := j + 1;\n"
+            + "        }\n"
+            + "        i := i + 1;\n"
+            + "    }\n"
+            + "}\n";
+
+    @Param({ "100", "1000" })
+    public int n;
+
+    private Program program;
+    private Bytecode bytecode;
+    private CompiledProgram compiled;
+
+    @Setup
+    public void setup() {
+        byte[] source = String.format(LOOPS, n).getBytes(StandardCharsets.UTF_8);
+        program = new ConcreteSyntax(new TokenStream(ByteBuffer.wrap(source))).program();
+        bytecode = Bytecode.lower(program);
+        compiled = KayCompiler.compile(program);
+    }
+
+    @Benchmark
+    public int interpret() {
+        Interpreter in = new Interpreter(program);
+        in.run();
+        return in.intValue("sum");
+    }
+
+    @Benchmark
+    public int vm() {
+        return KayVM.run(bytecode)[3];
+    }
+
+    @Benchmark
+    public int compiled() {
+        return compiled.run()[3];
+    }
+}
@@ -0,0 +1,37 @@
+package com.scanner.project;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// ParallelParser against the sequential parse of one large program, by
+// thread count; threads = 1 is the sequential parse
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class ParallelParserBenchmark {
+
+    @Param({ "10240" })
+    public int kilobytes;
+
+    @Param({ "1", "2", "4", "8" })
+    public int threads;
+
+    private KaySource source;
+
+    @Setup
+    public void setup() {
+        ByteBuffer b = BenchmarkSources.program(kilobytes, 1);
+        source = KaySource.of(b);
+    }
+
+    @Benchmark
+    public Program parse() {
+        return ParallelParser.parse(source, threads);
+    }
+}
@@ -0,0 +1,49 @@
+package com.scanner.project;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// End-to-end parse: scanning plus ConcreteSyntax.program(), on one
+// thread, with the scanner pipelined on a second, or from a TokenArray
+// as on a TokenCache hit
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class ParserBenchmark {
+
+    @Param({ "1", "1024", "102400" })
+    public int kilobytes;
+
+    @Param({ "1", "8" })
+    public int depth;
+
+    private ByteBuffer source;
+    private TokenArray tokens;
+
+    @Setup
+    public void setup() {
+        source = BenchmarkSources.program(kilobytes, depth);
+        tokens = TokenArray.tokenize(KaySource.of(source));
+    }
+
+    @Benchmark
+    public Program parse() {
+        return new ConcreteSyntax(new TokenStream(source.duplicate())).program();
+    }
+
+    @Benchmark
+    public Program pipelined() {
+        return ConcreteSyntax.pipelined(KaySource.of(source));
+    }
+
+    @Benchmark
+    public Program fromTokens() {
+        return new ConcreteSyntax(tokens.cursor(KaySource.of(source))).program();
+    }
+}
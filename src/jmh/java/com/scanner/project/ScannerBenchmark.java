@@ -0,0 +1,39 @@
+package com.scanner.project;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// Raw tokenization speed of TokenStream's cursor over an in-memory source
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class ScannerBenchmark {
+
+    @Param({ "1", "1024", "102400" })
+    public int kilobytes;
+
+    @Param({ "1", "8" })
+    public int depth;
+
+    private ByteBuffer source;
+
+    @Setup
+    public void setup() {
+        source = BenchmarkSources.program(kilobytes, depth);
+    }
+
+    @Benchmark
+    public int tokenize() {
+        TokenStream ts = new TokenStream(source.duplicate());
+        int n = 0;
+        while (ts.advance() != TokenKind.EOF)
+            n++;
+        return n;
+    }
+}
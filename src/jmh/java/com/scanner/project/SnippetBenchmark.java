@@ -0,0 +1,86 @@
+package com.scanner.project;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// Validating many small programs, most of them invalid: the cost of a
+// syntax error relative to the parse around it, and of a fresh parser
+// per snippet against a pooled one
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnippetBenchmark {
+
+    private static final int SNIPPETS = 1000;
+
+    private ByteBuffer[] snippets;
+    private String[] texts;
+    private final ParserPool pool = new ParserPool(1);
+
+    @Setup
+    public void setup() {
+        snippets = new ByteBuffer[SNIPPETS];
+        texts = new String[SNIPPETS];
+        for (int i = 0; i < SNIPPETS; i++) {
+            String text = new KayGenerator(i).declarations(4).statements(6).nesting(1)
+                    .commentDensity(0).invalidRate(0.3).generate();
+            texts[i] = text;
+            snippets[i] = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    // Number of invalid snippets, found by catching the exception
+    @Benchmark
+    public int parseAndCatch() {
+        int invalid = 0;
+        for (ByteBuffer s : snippets) {
+            try {
+                new ConcreteSyntax(new TokenStream(s.duplicate())).program();
+            } catch (KaySyntaxException e) {
+                invalid++;
+            }
+        }
+        return invalid;
+    }
+
+    @Benchmark
+    public int tryParse() {
+        int invalid = 0;
+        for (ByteBuffer s : snippets) {
+            if (!ConcreteSyntax.tryParse(new TokenStream(s.duplicate())).ok())
+                invalid++;
+        }
+        return invalid;
+    }
+
+    // Text snippets, each encoded and parsed by a fresh parser
+    @Benchmark
+    public int freshFromText() {
+        int invalid = 0;
+        for (String s : texts) {
+            if (!ConcreteSyntax.tryParse(KaySource.of(s)).ok())
+                invalid++;
+        }
+        return invalid;
+    }
+
+    // Text snippets through a pooled parser and its reused buffer
+    @Benchmark
+    public int pooledFromText() {
+        int invalid = 0;
+        for (String s : texts) {
+            try (ParserPool.Lease parser = pool.acquire()) {
+                if (!parser.parse(s).ok())
+                    invalid++;
+            }
+        }
+        return invalid;
+    }
+}
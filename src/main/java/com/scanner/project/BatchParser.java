@@ -0,0 +1,314 @@
+package com.scanner.project;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+// Parses many KAY files in parallel
+//
+// Files are memory-mapped and parsed fail-fast on a ForkJoinPool of
+// parallelism() threads. Results reach the consumer one at a time, in
+// input order, whichever file finishes first. Memory is bounded by
+// maxBytesInFlight(): a file is only started once the bytes of the files
+// started but not yet delivered fit under the bound (a single larger file
+// runs alone), so a slow file early in the list holds back new work
+// rather than letting finished results pile up behind it. Anything a
+// parse throws, a StackOverflowError on deeply nested input included, is
+// that file's result; it never stops the run.
+
+public final class BatchParser {
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private long maxBytesInFlight = 64L << 20;
+
+    // Number of files parsed at once
+    public BatchParser parallelism(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        parallelism = threads;
+        return this;
+    }
+
+    // Upper bound on the source bytes of files started but not delivered
+    public BatchParser maxBytesInFlight(long bytes) {
+        if (bytes < 1)
+            throw new IllegalArgumentException("maxBytesInFlight must be at least 1");
+        maxBytesInFlight = bytes;
+        return this;
+    }
+
+    // The outcome for one file
+    public static final class Result {
+        private final Path path;
+        private final long bytes;
+        private final ParseResult parse;
+        private final Throwable error;
+
+        Result(Path path, long bytes, ParseResult parse, Throwable error) {
+            this.path = path;
+            this.bytes = bytes;
+            this.parse = parse;
+            this.error = error;
+        }
+
+        public Path path() {
+            return path;
+        }
+
+        // Size of the file in bytes
+        public long bytes() {
+            return bytes;
+        }
+
+        // True if the file was read and parsed without error
+        public boolean ok() {
+            return parse != null && parse.ok();
+        }
+
+        // The parse, or null if the file could not be read or parsed
+        public ParseResult parse() {
+            return parse;
+        }
+
+        // Why the file could not be read or parsed, or null: an
+        // IOException, or the unexpected exception or error the parser threw
+        public Throwable error() {
+            return error;
+        }
+
+        public String toString() {
+            if (error != null)
+                return path + ": " + error;
+            return ok() ? path + ": ok" : parse.diagnostic().toString();
+        }
+    }
+
+    // Totals of one run
+    public static final class Summary {
+        private final int files;
+        private final int failed;
+        private final long bytes;
+        private final long nanos;
+
+        Summary(int files, int failed, long bytes, long nanos) {
+            this.files = files;
+            this.failed = failed;
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+
+        public int files() {
+            return files;
+        }
+
+        // Files that did not parse or could not be read
+        public int failed() {
+            return failed;
+        }
+
+        public long bytes() {
+            return bytes;
+        }
+
+        public double seconds() {
+            return nanos / 1e9;
+        }
+
+        public double filesPerSecond() {
+            return files / Math.max(seconds(), 1e-9);
+        }
+
+        public double megabytesPerSecond() {
+            return bytes / 1e6 / Math.max(seconds(), 1e-9);
+        }
+
+        public String toString() {
+            return String.format("%d files, %d failed, %.2f MB in %.3f s: %.0f files/s, %.2f MB/s",
+                    files, failed, bytes / 1e6, seconds(), filesPerSecond(), megabytesPerSecond());
+        }
+    }
+
+    // Parses files and returns their results in the same order
+    public List<Result> parse(List<Path> files) {
+        List<Result> results = new ArrayList<>(files.size());
+        run(files, results::add);
+        return results;
+    }
+
+    // Parses files, passing each result to consumer in input order; calls
+    // to consumer do not overlap
+    public Summary run(List<Path> files, Consumer<Result> consumer) {
+        long begin = System.nanoTime();
+        int n = files.size();
+        Delivery delivery = new Delivery(n, consumer);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            for (int i = 0; i < n; i++) {
+                Path path = files.get(i);
+                long size = size(path);
+                delivery.acquire(size);
+                int index = i;
+                pool.execute(() -> {
+                    Result r = null;
+                    try {
+                        r = parse(path, size);
+                    } finally {
+                        // Always, or await() would wait for this file forever
+                        if (r == null)
+                            r = new Result(path, size, null, new IllegalStateException("Parse task failed"));
+                        delivery.done(index, r);
+                    }
+                });
+            }
+            delivery.await();
+        } finally {
+            pool.shutdownNow();
+        }
+        return new Summary(n, delivery.failed, delivery.bytes, System.nanoTime() - begin);
+    }
+
+    private static long size(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static Result parse(Path path, long size) {
+        try {
+            return new Result(path, size, ConcreteSyntax.tryParse(KaySource.file(path)), null);
+        } catch (Throwable e) {
+            // Errors too: the parser's recursion can overflow a worker's stack
+            return new Result(path, size, null, e);
+        }
+    }
+
+    // Reorders results and accounts for the bytes in flight. Permits are
+    // in KiB so that any bound fits in an int.
+    private final class Delivery {
+        private final Result[] done;
+        private final Consumer<Result> consumer;
+        private final Semaphore inFlight;
+        private final int maxPermits;
+        private int next;
+        private int remaining;
+        private Throwable failure;
+        int failed;
+        long bytes;
+
+        Delivery(int n, Consumer<Result> consumer) {
+            done = new Result[n];
+            this.consumer = consumer;
+            remaining = n;
+            maxPermits = (int) Math.min(Integer.MAX_VALUE, Math.max(1, maxBytesInFlight >> 10));
+            inFlight = new Semaphore(maxPermits);
+        }
+
+        void acquire(long size) {
+            inFlight.acquireUninterruptibly(permits(size));
+        }
+
+        // Stores result, then delivers every result that is now next in
+        // line, releasing their permits
+        synchronized void done(int index, Result result) {
+            done[index] = result;
+            while (next < done.length && done[next] != null) {
+                Result r = done[next];
+                done[next++] = null;
+                bytes += r.bytes();
+                if (!r.ok())
+                    failed++;
+                try {
+                    if (failure == null)
+                        consumer.accept(r);
+                } catch (Throwable e) {
+                    // Rethrown by await(); the remaining results are counted
+                    // but not passed on
+                    failure = e;
+                }
+                inFlight.release(permits(r.bytes()));
+                remaining--;
+            }
+            notifyAll();
+        }
+
+        private int permits(long size) {
+            return (int) Math.min(maxPermits, Math.max(1, (size + 1023) >> 10));
+        }
+
+        synchronized void await() {
+            boolean interrupted = false;
+            while (remaining > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted)
+                Thread.currentThread().interrupt();
+            if (failure instanceof Error)
+                throw (Error) failure;
+            if (failure instanceof RuntimeException)
+                throw (RuntimeException) failure;
+            if (failure != null)
+                throw new IllegalStateException("Consumer failed", failure);
+        }
+    }
+
+    // The .kay files under each path, sorted within each directory walk;
+    // plain files are taken as given
+    public static List<Path> files(List<Path> paths) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (Path p : paths) {
+            if (!Files.isDirectory(p)) {
+                files.add(p);
+                continue;
+            }
+            try (Stream<Path> walk = Files.walk(p)) {
+                walk.filter(f -> Files.isRegularFile(f) && f.toString().endsWith(".kay"))
+                        .sorted()
+                        .forEach(files::add);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        return files;
+    }
+
+    // Usage: BatchParser [-j threads] [-m megabytes] <file or directory>...
+    // Prints each file's error, or ok with -v, then the totals
+    public static void main(String[] args) throws IOException {
+        BatchParser batch = new BatchParser();
+        boolean verbose = false;
+        List<Path> paths = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-j") && i + 1 < args.length)
+                batch.parallelism(Integer.parseInt(args[++i]));
+            else if (args[i].equals("-m") && i + 1 < args.length)
+                batch.maxBytesInFlight(Long.parseLong(args[++i]) << 20);
+            else if (args[i].equals("-v"))
+                verbose = true;
+            else
+                paths.add(Paths.get(args[i]));
+        }
+        if (paths.isEmpty()) {
+            System.out.println("Usage: BatchParser [-j threads] [-m megabytes] [-v] <file or directory>...");
+            return;
+        }
+        boolean all = verbose;
+        Summary summary = batch.run(files(paths), r -> {
+            if (all || !r.ok())
+                System.out.println(r);
+        });
+        System.out.println(summary);
+    }
+}
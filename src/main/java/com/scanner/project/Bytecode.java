@@ -0,0 +1,229 @@
+package com.scanner.project;
+
+import java.util.Arrays;
+
+// A KAY program lowered to register bytecode for KayVM
+//
+// The code is one int[]. Registers 0..n-1 are the declared variables, in
+// declaration order like Interpreter.slots(); the registers after them
+// hold temporaries. Instructions are an opcode followed by register
+// numbers, constants or absolute jump targets:
+//
+//   op dst a b      Operator.OP_PLUS .. Operator.OP_DIV, OP_AND .. OP_GE
+//   NOT dst a       Operator.OP_NOT
+//   NEG dst a       unary minus
+//   CONST dst v     dst = v
+//   MOVE dst a      dst = a
+//   JUMP t          pc = t
+//   JUMPF a t       if a == 0, pc = t
+//   JCMP op a b t   if !(a op b), pc = t, for the six comparisons
+//   FAIL i          undeclared variable undeclared[i]
+//   HALT
+//
+// A Bytecode is immutable once lowered, so it can be cached and run any
+// number of times, from any thread; each run gets its own registers.
+
+public final class Bytecode {
+    static final int NEG = 16;
+    static final int CONST = 17;
+    static final int MOVE = 18;
+    static final int JUMP = 19;
+    static final int JUMPF = 20;
+    static final int JCMP = 21;
+    static final int FAIL = 22;
+    static final int HALT = 23;
+
+    final int[] code;
+    final int registers;
+    final SlotLayout layout;
+    final String[] undeclared;
+
+    private Bytecode(int[] code, int registers, SlotLayout layout, String[] undeclared) {
+        this.code = code;
+        this.registers = registers;
+        this.layout = layout;
+        this.undeclared = undeclared;
+    }
+
+    public static Bytecode lower(Program p) {
+        return new Lowering(p).lower();
+    }
+
+    // Number of declared variables, the leading registers
+    public int variables() {
+        return layout.size();
+    }
+
+    // Length of the code in ints
+    public int length() {
+        return code.length;
+    }
+
+    // "name = value" for every declared variable, one per line
+    public String state(int[] slots) {
+        return layout.state(slots);
+    }
+
+    // The lowering pass: one walk over the tree, temporaries as a stack
+    private static final class Lowering {
+        private final Program program;
+        private final SlotLayout layout;
+        private String[] undeclared = new String[0];
+
+        private int[] code = new int[64];
+        private int size;
+        private int top;
+        private int registers;
+
+        Lowering(Program p) {
+            program = p;
+            layout = new SlotLayout(p.decpart);
+            top = registers = layout.size();
+        }
+
+        Bytecode lower() {
+            statement(program.body);
+            emit(HALT);
+            return new Bytecode(Arrays.copyOf(code, size), registers, layout, undeclared);
+        }
+
+        private void emit(int word) {
+            if (size == code.length)
+                code = Arrays.copyOf(code, size * 2);
+            code[size++] = word;
+        }
+
+        private void emit(int a, int b) {
+            emit(a);
+            emit(b);
+        }
+
+        private void emit(int a, int b, int c) {
+            emit(a);
+            emit(b);
+            emit(c);
+        }
+
+        private int temp() {
+            if (++top > registers)
+                registers = top;
+            return top - 1;
+        }
+
+        // Register of v, or -1 if it was never declared
+        private int register(Variable v) {
+            return layout.slot(v);
+        }
+
+        private void fail(Variable v) {
+            undeclared = Arrays.copyOf(undeclared, undeclared.length + 1);
+            undeclared[undeclared.length - 1] = v.id;
+            emit(FAIL, undeclared.length - 1);
+        }
+
+        private void statement(Statement s) {
+            if (s instanceof Assignment) {
+                Assignment a = (Assignment) s;
+                int r = register(a.target);
+                int mark = top;
+                compute(a.source, r < 0 ? temp() : r);
+                top = mark;
+                if (r < 0)
+                    fail(a.target);
+            } else if (s instanceof Block) {
+                Block b = (Block) s;
+                for (int i = 0, n = b.blockmembers.size(); i < n; i++)
+                    statement((Statement) b.blockmembers.elementAt(i));
+            } else if (s instanceof Loop) {
+                Loop l = (Loop) s;
+                int start = size;
+                int exit = jumpIfFalse(l.test);
+                statement(l.body);
+                emit(JUMP, start);
+                code[exit] = size;
+            } else if (s instanceof Conditional) {
+                Conditional c = (Conditional) s;
+                int otherwise = jumpIfFalse(c.test);
+                statement(c.thenbranch);
+                if (c.elsebranch != null) {
+                    emit(JUMP, 0);
+                    int end = size - 1;
+                    code[otherwise] = size;
+                    statement(c.elsebranch);
+                    code[end] = size;
+                } else {
+                    code[otherwise] = size;
+                }
+            }
+            // Skip lowers to nothing
+        }
+
+        // Emits a jump taken when test is false; returns the index of its
+        // target word, to be patched
+        private int jumpIfFalse(Expression test) {
+            int mark = top;
+            if (test instanceof Binary && isComparison(((Binary) test).op.code)) {
+                Binary b = (Binary) test;
+                int x = operand(b.term1);
+                int y = operand(b.term2);
+                emit(JCMP, b.op.code);
+                emit(x, y, 0);
+            } else {
+                emit(JUMPF, operand(test), 0);
+            }
+            top = mark;
+            return size - 1;
+        }
+
+        private static boolean isComparison(int op) {
+            return op >= Operator.OP_LT && op <= Operator.OP_GE;
+        }
+
+        // A register holding e's value; variables are used in place
+        private int operand(Expression e) {
+            if (e instanceof Variable) {
+                int r = register((Variable) e);
+                if (r >= 0)
+                    return r;
+            }
+            int t = temp();
+            compute(e, t);
+            return t;
+        }
+
+        // Stores the value of e in register dst
+        private void compute(Expression e, int dst) {
+            int mark = top;
+            if (e instanceof Binary) {
+                Binary b = (Binary) e;
+                int op = b.op.code;
+                if (op == Operator.OP_UNKNOWN || op == Operator.OP_NOT)
+                    throw new RuntimeException("Runtime error - Unknown operator: " + b.op.val);
+                int x = operand(b.term1);
+                int y = operand(b.term2);
+                emit(op, dst);
+                emit(x, y);
+            } else if (e instanceof Variable) {
+                Variable v = (Variable) e;
+                int r = register(v);
+                if (r < 0)
+                    fail(v);
+                else if (r != dst)
+                    emit(MOVE, dst, r);
+            } else if (e instanceof Value) {
+                Value v = (Value) e;
+                emit(CONST, dst, v.type.isBoolean() ? (v.boolValue ? 1 : 0) : v.intValue);
+            } else if (e instanceof Unary) {
+                Unary u = (Unary) e;
+                int op = u.op.code == Operator.OP_NOT ? Operator.OP_NOT
+                        : u.op.code == Operator.OP_MINUS ? NEG : 0;
+                if (op == 0)
+                    throw new RuntimeException("Runtime error - Unknown operator: " + u.op.val);
+                emit(op, dst, operand(u.term));
+            } else {
+                throw new RuntimeException("Runtime error - Unknown expression: " + e);
+            }
+            top = mark;
+        }
+    }
+}
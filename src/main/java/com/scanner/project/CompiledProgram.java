@@ -0,0 +1,33 @@
+package com.scanner.project;
+
+// A KAY program compiled to a JVM class by KayCompiler
+//
+// run() takes the same state as Interpreter.slots(): one int per
+// declaration in declaration order, bools as 0 and 1. The generated code
+// loads the slots into JVM locals on entry and stores them back on exit,
+// whether it returns or throws, so the JIT sees plain local variables
+// inside loops.
+
+public abstract class CompiledProgram {
+    SlotLayout layout;
+
+    // Runs the program on slots in place
+    public abstract void run(int[] slots);
+
+    // Runs the program from the initial state and returns the final slots
+    public int[] run() {
+        int[] slots = new int[layout.size()];
+        run(slots);
+        return slots;
+    }
+
+    // "name = value" for every declared variable, one per line
+    public String state(int[] slots) {
+        return layout.state(slots);
+    }
+
+    // Thrown by compiled code that reaches an undeclared variable
+    static RuntimeException undeclared(String name) {
+        return new RuntimeException("Runtime error - Undeclared variable: " + name);
+    }
+}
@@ -1,194 +1,442 @@
 package com.scanner.project;
 
+import java.util.ArrayList;
+import java.util.List;
+
 // KAY language parser
+//
+// Every node gets the span of its source text (see Span), and errors are
+// KaySyntaxExceptions that know their line and column.
+//
+// By default the parse stops at the first error. In recovery mode each
+// error is recorded as a Diagnostic instead, the parser resynchronizes at
+// the next ';', '}', if or while, and program() returns the statements
+// that did parse, so one pass reports every error in the input. A
+// missing ';' before another statement or a '}' is reported and then
+// assumed, so it does not cost the statement after it.
+//
+// tryParse() is the fail-fast parse without throwing. Syntax errors are
+// cheap either way: KaySyntaxException takes no stack trace and builds
+// its message only when asked.
+//
+// Any KaySource can be parsed directly: Strings, char[] and byte[]
+// slices, streams and channels, with no copy beyond the one UTF-8
+// encoding or read the scanner needs.
 
 public class ConcreteSyntax {
 
-    public Token token;
-    public TokenStream input;
+    private final TokenCursor input;
+    // End offset of the last token consumed
+    private int last;
+
+    private final boolean recover;
+    private final List<Diagnostic> diagnostics = new ArrayList<>();
+
+    public ConcreteSyntax(TokenCursor ts) {
+        this(ts, false);
+    }
+
+    public ConcreteSyntax(KaySource source) {
+        this(new TokenStream(source), false);
+    }
+
+    public ConcreteSyntax(KaySource source, boolean recover) {
+        this(new TokenStream(source), recover);
+    }
 
-    public ConcreteSyntax(TokenStream ts) {
+    // recover selects recovery mode
+    public ConcreteSyntax(TokenCursor ts, boolean recover) {
         input = ts;
-        token = input.nextToken();
+        this.recover = recover;
+        advance();
     }
 
-    private String SyntaxError(String expected) {
-        String s = "Syntax error - Expecting: " + expected + " But saw: "
-                + token.getType() + " = " + token.getValue();
-        System.out.println(s);
-        throw new RuntimeException(s);
+    // Parses ts, stopping at the first error, and returns the Program or
+    // that error
+    public static ParseResult tryParse(TokenCursor ts) {
+        try {
+            return new ParseResult(new ConcreteSyntax(ts).program(), null);
+        } catch (KaySyntaxException e) {
+            return new ParseResult(null, new Diagnostic(e));
+        }
     }
 
-    private void match(String expected) {
-        boolean isTokenType = expected.equals("Identifier") || expected.equals("Keyword") || 
-                              expected.equals("Literal") || expected.equals("Operator") || 
-                              expected.equals("Separator") || expected.equals("EOF");
-        
-        boolean matched = false;
-        if (isTokenType) {
-            matched = token.getType().equals(expected);
+    // Parses source fail-fast with the scanner on a thread of its own (see
+    // PipelinedTokens); this pays off only for large inputs
+    public static Program pipelined(KaySource source) {
+        try (PipelinedTokens tokens = new PipelinedTokens(source)) {
+            return new ConcreteSyntax(tokens).program();
+        }
+    }
+
+    // Points this parser and its TokenStream at source, keeping their
+    // buffers and symbol table, and clears the diagnostics. In fail-fast
+    // mode this throws if the first token does not scan.
+    public void reset(KaySource source) {
+        if (!(input instanceof TokenStream))
+            throw new IllegalStateException("Only a TokenStream can be reset");
+        ((TokenStream) input).reset(source);
+        last = 0;
+        diagnostics.clear();
+        advance();
+    }
+
+    // reset(source) then program(), returning the Program or the error;
+    // in recovery mode the errors are in diagnostics() instead
+    public ParseResult parse(KaySource source) {
+        try {
+            reset(source);
+            return new ParseResult(program(), null);
+        } catch (KaySyntaxException e) {
+            return new ParseResult(null, new Diagnostic(e));
+        }
+    }
+
+    public static ParseResult tryParse(KaySource source) {
+        return tryParse(new TokenStream(source));
+    }
+
+    public TokenCursor input() {
+        return input;
+    }
+
+    // Errors recorded in recovery mode, in source order
+    public List<Diagnostic> diagnostics() {
+        return diagnostics;
+    }
+
+    private void report(KaySyntaxException e) {
+        diagnostics.add(new Diagnostic(e));
+    }
+
+    // Moves to the next token; in recovery mode a scan error is recorded
+    // and the cursor stays on the offending token
+    private void advance() {
+        if (!recover) {
+            input.advance();
+            return;
+        }
+        try {
+            input.advance();
+        } catch (KaySyntaxException e) {
+            report(e);
+        }
+    }
+
+    // Skips the rest of a statement or declaration that failed after
+    // starting at offset from: up to and including the next ';', or a
+    // whole { ... } (else) { ... } group, or up to a '}', if or while.
+    // Always moves past at least one token.
+    private void synchronize(int from) {
+        int depth = 0;
+        boolean moved = input.start() != from;
+        while (input.kind() != TokenKind.EOF) {
+            Terminal t = input.terminal();
+            if (depth == 0 && moved) {
+                if (t == Terminal.SEMICOLON) {
+                    advance();
+                    return;
+                }
+                if (t == Terminal.RBRACE || t == Terminal.IF || t == Terminal.WHILE)
+                    return;
+            }
+            if (t == Terminal.LBRACE) {
+                depth++;
+            } else if (t == Terminal.RBRACE && depth > 0) {
+                depth--;
+                if (depth == 0) {
+                    advance();
+                    if (input.terminal() != Terminal.ELSE)
+                        return;
+                    continue;
+                }
+            }
+            advance();
+            moved = true;
+        }
+    }
+
+    private void match(Terminal expected) {
+        if (input.terminal() == expected) {
+            last = input.end();
+            advance();
         } else {
-            matched = token.getValue().equals(expected);
+            throw expecting(expected);
         }
-        
-        if (matched) {
-            token = input.nextToken();
+    }
+
+    private KaySyntaxException expecting(Terminal expected) {
+        return KaySyntaxException.expecting(expected.text, input);
+    }
+
+    private void match(TokenKind expected) {
+        if (input.kind() == expected) {
+            last = input.end();
+            advance();
         } else {
-            throw new RuntimeException("Syntax error - Expecting: " + expected
-                    + " But saw: " + token.getType() + " = " + token.getValue());
+            throw KaySyntaxException.expecting(expected.typeName(), input);
         }
     }
 
+    // True if a ';' is missing right before the current token: it starts
+    // a statement or ends a block
+    private boolean isInsertionPoint() {
+        Terminal t = input.terminal();
+        return input.kind() == TokenKind.IDENTIFIER || t == Terminal.IF || t == Terminal.WHILE
+                || t == Terminal.RBRACE;
+    }
+
     public Program program() {
-        match("main");
-        match("{");
+        int open;
+        try {
+            match(Terminal.MAIN);
+            open = input.start();
+            match(Terminal.LBRACE);
+        } catch (KaySyntaxException e) {
+            if (!recover)
+                throw e;
+            // Resume just past the first '{'
+            report(e);
+            while (input.kind() != TokenKind.EOF && input.terminal() != Terminal.LBRACE)
+                advance();
+            open = input.start();
+            if (input.kind() != TokenKind.EOF)
+                match(Terminal.LBRACE);
+        }
         Declarations decpart = declarations();
         Block body = statements();
-        match("}");
-        return new Program(decpart, body);
+        try {
+            match(Terminal.RBRACE);
+        } catch (KaySyntaxException e) {
+            if (!recover)
+                throw e;
+            report(e);
+        }
+        body.span = Span.of(open, last);
+        Program p = new Program(decpart, body);
+        p.lines = input.lines();
+        return p;
+    }
+
+    // The parts of program() that ParallelParser uses: "main {" and the
+    // declarations, leaving the cursor on the first statement; returns
+    // the offset of the '{'
+    int header(Declarations decpart) {
+        match(Terminal.MAIN);
+        int open = input.start();
+        match(Terminal.LBRACE);
+        decpart.addAll(declarations());
+        return open;
+    }
+
+    // A run of statements that must reach the end of the input
+    Block chunk() {
+        Block b = statements();
+        if (input.kind() != TokenKind.EOF)
+            throw KaySyntaxException.unexpected("Syntax error - Unexpected token in statement: ", input);
+        return b;
+    }
+
+    // Statements up to offset end, for IncrementalParser: the last one must
+    // end exactly there
+    Block statementsTo(int end) {
+        Block b = new Block();
+        while (input.kind() != TokenKind.EOF && input.start() < end)
+            b.blockmembers.add(statement());
+        if (last != end)
+            throw KaySyntaxException.unexpected("Syntax error - Statement does not end at " + end + ": ", input);
+        return b;
     }
 
     private Declarations declarations() {
         Declarations decs = new Declarations();
 
-        while (token.getValue().equals("integer") || token.getValue().equals("bool")) {
-            String type = token.getValue();
-            match("Keyword");
-            
-            String id = token.getValue();
-            match("Identifier");
-            
-            Declaration d = new Declaration();
-            d.v = new Variable();
-            d.v.id = id;
-            d.t = new Type(type);
-            decs.add(d);
-            
-            while (token.getValue().equals(",")) {
-                match(",");
-                id = token.getValue();
-                match("Identifier");
-                
-                d = new Declaration();
-                d.v = new Variable();
-                d.v.id = id;
-                d.t = new Type(type);
-                decs.add(d);
+        while (input.terminal() == Terminal.INTEGER || input.terminal() == Terminal.BOOL) {
+            int from = input.start();
+            try {
+                declaration(decs);
+            } catch (KaySyntaxException e) {
+                if (!recover)
+                    throw e;
+                report(e);
+                synchronize(from);
             }
-            
-            match(";");
         }
         return decs;
     }
 
+    // One "type v1, v2, ...;" line, added to decs
+    private void declaration(Declarations decs) {
+        String type = input.text();
+        match(TokenKind.KEYWORD);
+        
+        Declaration d = new Declaration();
+        d.v = variable();
+        d.t = new Type(type);
+        decs.add(d);
+        
+        while (input.terminal() == Terminal.COMMA) {
+            match(Terminal.COMMA);
+            d = new Declaration();
+            d.v = variable();
+            d.t = new Type(type);
+            decs.add(d);
+        }
+        
+        match(Terminal.SEMICOLON);
+    }
+
+    // Builds a Variable for the current Identifier token and consumes it
+    private Variable variable() {
+        Variable v = new Variable();
+        int start = input.start();
+        if (input.kind() == TokenKind.IDENTIFIER) {
+            v.symbol = input.symbol();
+            v.id = v.symbol.name;
+        }
+        match(TokenKind.IDENTIFIER);
+        v.span = Span.of(start, last);
+        return v;
+    }
+
     private Block statements() {
         Block b = new Block();
 
-        while (token.getType().equals("Identifier") ||
-               token.getValue().equals("if") ||
-               token.getValue().equals("while")) {
-            b.blockmembers.add(statement());
+        // In recovery mode anything up to the '}' is a statement or an error
+        while (input.kind() == TokenKind.IDENTIFIER ||
+               input.terminal() == Terminal.IF ||
+               input.terminal() == Terminal.WHILE ||
+               (recover && input.kind() != TokenKind.EOF && input.terminal() != Terminal.RBRACE)) {
+            int from = input.start();
+            try {
+                b.blockmembers.add(statement());
+            } catch (KaySyntaxException e) {
+                if (!recover)
+                    throw e;
+                report(e);
+                synchronize(from);
+            }
         }
         return b;
     }
 
     private Statement statement() {
-        if (token.getType().equals("Identifier")) {
+        if (input.kind() == TokenKind.IDENTIFIER) {
             return assignment();
-        } else if (token.getValue().equals("if")) {
+        } else if (input.terminal() == Terminal.IF) {
             return ifStatement();
-        } else if (token.getValue().equals("while")) {
+        } else if (input.terminal() == Terminal.WHILE) {
             return whileStatement();    
         } else {
-            throw new RuntimeException("Syntax error - Unexpected token in statement: "
-                    + token.getType() + " = " + token.getValue());
+            throw KaySyntaxException.unexpected("Syntax error - Unexpected token in statement: ", input);
         }
     }
 
     private Assignment assignment() {
-        String id = token.getValue();
-        match("Identifier");
-        match(":=");
+        Variable target = variable();
+        match(Terminal.ASSIGN);
         Expression e = expression();
-        match(";");
+        if (recover && input.terminal() != Terminal.SEMICOLON && isInsertionPoint())
+            report(expecting(Terminal.SEMICOLON));
+        else
+            match(Terminal.SEMICOLON);
 
         Assignment a = new Assignment();
-        a.target = new Variable();
-        a.target.id = id;
+        a.target = target;
         a.source = e;
+        a.span = Span.of(Span.start(target.span), last);
         return a;
     }
 
     private Conditional ifStatement() {
-        match("if"); 
-        match("(");
+        int start = input.start();
+        match(Terminal.IF); 
+        match(Terminal.LPAREN);
         Expression cond = expression();
-        match(")");
-        match("{");
-        Block thenPart = statements();
-        match("}");
+        match(Terminal.RPAREN);
+        Block thenPart = braced();
         Block elsePart = null;
-        if (token.getValue().equals("else")) {
-            match("else");
-            match("{");
-            elsePart = statements();
-            match("}");
+        if (input.terminal() == Terminal.ELSE) {
+            match(Terminal.ELSE);
+            elsePart = braced();
         }
 
         Conditional c = new Conditional();
         c.test = cond;
         c.thenbranch = thenPart;
         c.elsebranch = elsePart;
+        c.span = Span.of(start, last);
         return c;
     }
 
     private Loop whileStatement() {
-        match("while");
-        match("(");
+        int start = input.start();
+        match(Terminal.WHILE);
+        match(Terminal.LPAREN);
         Expression cond = expression();
-        match(")");
-        match("{");
-        Block body = statements();
-        match("}");
+        match(Terminal.RPAREN);
+        Block body = braced();
 
         Loop l = new Loop();
         l.test = cond;
         l.body = body;
+        l.span = Span.of(start, last);
         return l;
     }
 
+    // { statements }
+    private Block braced() {
+        int open = input.start();
+        match(Terminal.LBRACE);
+        Block b = statements();
+        match(Terminal.RBRACE);
+        b.span = Span.of(open, last);
+        return b;
+    }
+
     private Expression expression() {
         Expression e = term();
-        while (token.getValue().equals("+") || token.getValue().equals("-") ||
-               token.getValue().equals("<") || token.getValue().equals(">") ||
-               token.getValue().equals("<=") || token.getValue().equals(">=") ||
-               token.getValue().equals("==") || token.getValue().equals("!=") ||
-               token.getValue().equals("&&") || token.getValue().equals("||")) {
+        while (isExpressionOp(input.terminal())) {
 
-            String op = token.getValue();
+            Terminal op = input.terminal();
             match(op);
             Expression e2 = term();
 
             Binary b = new Binary();
-            b.op = new Operator(op);
+            b.op = new Operator(op.text);
             b.term1 = e;
             b.term2 = e2;
+            b.span = Span.of(Span.start(e.span), Span.end(e2.span));
             e = b;
         }
         return e;
     }
 
+    private static boolean isExpressionOp(Terminal t) {
+        if (t == null)
+            return false;
+        switch (t) {
+            case PLUS: case MINUS:
+            case LT: case GT: case LE: case GE: case EQ: case NE:
+            case AND: case OR:
+                return true;
+            default:
+                return false;
+        }
+    }
+
     private Expression term() {
         Expression e = factor();
-        while (token.getValue().equals("*") || token.getValue().equals("/")) {
-            String op = token.getValue();
+        while (input.terminal() == Terminal.TIMES || input.terminal() == Terminal.DIV) {
+            Terminal op = input.terminal();
             match(op);
             Expression e2 = factor();
 
             Binary b = new Binary();
-            b.op = new Operator(op);
+            b.op = new Operator(op.text);
             b.term1 = e;
             b.term2 = e2;
+            b.span = Span.of(Span.start(e.span), Span.end(e2.span));
             e = b;
         }
         return e;
@@ -196,33 +444,33 @@ public class ConcreteSyntax {
 
     private Expression factor() {
         Expression e = null;
+        int start = input.start();
 
-        if (token.getType().equals("Identifier")) {
-            Variable v = new Variable();
-            v.id = token.getValue();
-            e = v;
-            match("Identifier");
+        if (input.kind() == TokenKind.IDENTIFIER) {
+            e = variable();
 
-        } else if (token.getType().equals("Literal")) {
-            e = new Value(Integer.parseInt(token.getValue()));
-            match("Literal");
+        } else if (input.kind() == TokenKind.LITERAL) {
+            e = new Value(input.intValue());
+            match(TokenKind.LITERAL);
+            e.span = Span.of(start, last);
 
-        } else if (token.getType().equals("Keyword") && token.getValue().equals("True")) {
+        } else if (input.terminal() == Terminal.TRUE) {
             e = new Value(true);
-            match("True");
+            match(Terminal.TRUE);
+            e.span = Span.of(start, last);
 
-        } else if (token.getType().equals("Keyword") && token.getValue().equals("False")) {
+        } else if (input.terminal() == Terminal.FALSE) {
             e = new Value(false);
-            match("False");
+            match(Terminal.FALSE);
+            e.span = Span.of(start, last);
 
-        } else if (token.getValue().equals("(")) {
-            match("(");
+        } else if (input.terminal() == Terminal.LPAREN) {
+            match(Terminal.LPAREN);
             e = expression();
-            match(")");
+            match(Terminal.RPAREN);
 
         } else {
-            throw new RuntimeException("Syntax error in factor - saw: "
-                    + token.getType() + " = " + token.getValue());
+            throw KaySyntaxException.unexpected("Syntax error in factor - saw: ", input);
         }
 
         return e;
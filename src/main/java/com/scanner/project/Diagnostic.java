@@ -0,0 +1,49 @@
+package com.scanner.project;
+
+// One syntax error: the message a fail-fast parse would throw, and where
+// it happened. The message, line and column are only worked out when
+// asked for.
+
+public final class Diagnostic {
+    private final KaySyntaxException error;
+
+    public Diagnostic(KaySyntaxException error) {
+        this.error = error;
+    }
+
+    public Diagnostic(String message, LineMap lines, int offset) {
+        this(new KaySyntaxException(message, lines, offset));
+    }
+
+    public String getMessage() {
+        return error.getMessage();
+    }
+
+    // Byte offset of the error in the source
+    public int getOffset() {
+        return error.getOffset();
+    }
+
+    public int getLine() {
+        return error.getLine();
+    }
+
+    public int getColumn() {
+        return error.getColumn();
+    }
+
+    // "file:line:col", or "line:col" without a file name
+    public String getLocation() {
+        return error.getLocation();
+    }
+
+    // The error as an exception, for callers that want to throw it
+    public KaySyntaxException exception() {
+        return error;
+    }
+
+    // "file:line:col: message"
+    public String toString() {
+        return error.getLocalizedMessage();
+    }
+}
@@ -0,0 +1,349 @@
+package com.scanner.project;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.IdentityHashMap;
+import java.util.Vector;
+
+// Keeps a KAY source and its Program up to date under text edits, for
+// editors that re-parse on every keystroke
+//
+// An edit is byte offset, removed length and inserted text, in the
+// coordinates of spans and KaySyntaxException.getOffset(). Node spans
+// take the place of a token array: they locate the innermost statement
+// that strictly contains the edit, at any nesting depth, and only that
+// statement's new text is scanned and parsed. The statements it turns
+// into replace it in its Block; every other Statement object is kept.
+// The new text must end exactly where the old statement did (shifted by
+// the edit), so the tokens after it, and the parse around it, are known
+// to be unchanged.
+//
+// An edit that is not inside one statement (declarations, between
+// statements, across two of them) or whose statement no longer parses on
+// its own falls back to a full parse, as does every edit after one that
+// left the source with a syntax error.
+//
+// The rest of an edit barely grows with the file. The text is a gap buffer
+// whose gap follows the edited statement, so an edit moves only the bytes
+// between the gap and the edit. Spans after the edit are not moved:
+// the edit is recorded as a pending (offset, length change) pair, and
+// spans are mapped through the pending edits made after them while the
+// edited statement is located. program() and result() settle every span
+// and close the gap, one pass over the nodes after the first pending
+// edit, so an editor should ask for the tree when it needs it rather
+// than after every keystroke. Locating a statement maps each span it
+// looks at through up to MAX_PENDING edits, so after that many the spans
+// are settled anyway (the gap stays where it is): a 1/MAX_PENDING share
+// of that pass is the one part of an edit's cost that grows with the file.
+//
+// Identifiers keep the ids of the first parse; names the edit introduces
+// get new ones, so ids can differ from a fresh parse's numbering.
+// Programs handed out earlier share Statements with the current one and
+// are not valid after an edit.
+
+public final class IncrementalParser {
+    private static final int MAX_PENDING = 64;
+
+    private final String name;
+    // Text is bytes[0, gapStart) then bytes[gapEnd, bytes.length)
+    private byte[] bytes;
+    private int gapStart;
+    private int gapEnd;
+    private SymbolTable symbols;
+    private Program program;
+    private Diagnostic diagnostic;
+    // See reparsed()
+    private int reparsed;
+
+    // Edits not yet applied to the spans: spans at or after to[i] move by
+    // delta[i]. Edit i is in the coordinates left by the edits before it.
+    private int pending;
+    private final int[] from = new int[MAX_PENDING];
+    private final int[] to = new int[MAX_PENDING];
+    private final int[] delta = new int[MAX_PENDING];
+    // Statements parsed by pending edit i - 1, with i: their spans only
+    // need the edits from i on. Others, and their children, need them all.
+    private final IdentityHashMap<Statement, Integer> epochs = new IdentityHashMap<>();
+    private boolean settled = true;
+
+    public IncrementalParser(CharSequence text) {
+        this(text, null);
+    }
+
+    // name is the file name used in error positions
+    public IncrementalParser(CharSequence text, String name) {
+        this.name = name;
+        bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        gapStart = gapEnd = bytes.length;
+        parseAll();
+    }
+
+    // The current Program, or null if the source has a syntax error
+    public Program program() {
+        settle();
+        return program;
+    }
+
+    // The current syntax error, or null
+    public Diagnostic diagnostic() {
+        return diagnostic;
+    }
+
+    public ParseResult result() {
+        return new ParseResult(program(), diagnostic);
+    }
+
+    // The current source text
+    public String text() {
+        byte[] text = new byte[size()];
+        System.arraycopy(bytes, 0, text, 0, gapStart);
+        System.arraycopy(bytes, gapEnd, text, gapStart, bytes.length - gapEnd);
+        return new String(text, StandardCharsets.UTF_8);
+    }
+
+    // Size of the source in bytes
+    public int size() {
+        return bytes.length - (gapEnd - gapStart);
+    }
+
+    // Number of statements the last edit parsed in place of the one it
+    // changed, or -1 if it fell back to parsing the whole source
+    public int reparsed() {
+        return reparsed;
+    }
+
+    // Replaces removed bytes at offset by inserted, and brings the parse
+    // up to date; true if the source parses. program() and diagnostic()
+    // have the details.
+    public boolean edit(int offset, int removed, CharSequence inserted) {
+        int size = size();
+        if (offset < 0 || removed < 0 || offset > size - removed)
+            throw new IndexOutOfBoundsException("Edit " + offset + "+" + removed + " outside 0.." + size);
+        byte[] text = inserted.toString().getBytes(StandardCharsets.UTF_8);
+        moveGap(offset);
+        gapEnd += removed;
+        if (gapEnd - gapStart < text.length)
+            grow(text.length);
+        System.arraycopy(text, 0, bytes, gapStart, text.length);
+        gapStart += text.length;
+
+        if (program == null || !reparse(offset, offset + removed, text.length - removed))
+            parseAll();
+        return program != null;
+    }
+
+    // Moves the gap so that it starts at offset
+    private void moveGap(int offset) {
+        if (offset < gapStart) {
+            int n = gapStart - offset;
+            System.arraycopy(bytes, offset, bytes, gapEnd - n, n);
+            gapStart = offset;
+            gapEnd -= n;
+        } else if (offset > gapStart) {
+            int n = offset - gapStart;
+            System.arraycopy(bytes, gapEnd, bytes, gapStart, n);
+            gapStart = offset;
+            gapEnd += n;
+        }
+    }
+
+    // Makes the gap at least n bytes long
+    private void grow(int n) {
+        int tail = bytes.length - gapEnd;
+        byte[] b = new byte[Math.max(size() + n, bytes.length * 2) + 64];
+        System.arraycopy(bytes, 0, b, 0, gapStart);
+        System.arraycopy(bytes, gapEnd, b, b.length - tail, tail);
+        gapEnd = b.length - tail;
+        bytes = b;
+    }
+
+    private void parseAll() {
+        reparsed = -1;
+        pending = 0;
+        epochs.clear();
+        moveGap(size());
+        TokenStream ts = new TokenStream(ByteBuffer.wrap(bytes, 0, gapStart), name);
+        ParseResult r = ConcreteSyntax.tryParse(ts);
+        program = r.program();
+        diagnostic = r.diagnostic();
+        symbols = ts.symbols();
+        settled = true;
+    }
+
+    // Applies the pending edits to every span and points the Program at
+    // the current text
+    private void settle() {
+        if (settled || program == null)
+            return;
+        settleSpans();
+        moveGap(size());
+        program.lines = new LineMap(ByteBuffer.wrap(bytes, 0, gapStart), 0, gapStart, name);
+        settled = true;
+    }
+
+    private void settleSpans() {
+        if (pending == 0)
+            return;
+        // Spans ending before every pending edit stay where they are
+        int[] floor = new int[pending + 1];
+        floor[pending] = Integer.MAX_VALUE;
+        for (int i = pending - 1; i >= 0; i--)
+            floor[i] = Math.min(from[i], floor[i + 1]);
+        settle(program.body, 0, floor);
+        pending = 0;
+        epochs.clear();
+    }
+
+    // The span in current coordinates of a node last placed by pending
+    // edit epoch - 1
+    private long current(long span, int epoch) {
+        if (span == Span.NONE || epoch == pending)
+            return span;
+        int start = Span.start(span);
+        int end = Span.end(span);
+        for (int i = epoch; i < pending; i++) {
+            if (start >= to[i])
+                start += delta[i];
+            if (end >= to[i])
+                end += delta[i];
+        }
+        return Span.of(start, end);
+    }
+
+    private int epoch(Statement s, int parent) {
+        Integer e = epochs.get(s);
+        return e != null ? e : parent;
+    }
+
+    // Re-parses the innermost statement strictly containing the old bytes
+    // [from, to); false if there is none or it does not parse on its own
+    private boolean reparse(int from, int to, int delta) {
+        Vector members = null;
+        int index = -1;
+        int epoch = 0;
+        Vector list = program.body.blockmembers;
+        if (!inside(current(program.body.span, 0), from, to))
+            return false;
+        int listEpoch = 0;
+        while (list != null) {
+            int i = find(list, listEpoch, from, to);
+            if (i < 0)
+                break;
+            members = list;
+            index = i;
+            list = null;
+            Statement s = (Statement) members.elementAt(i);
+            epoch = epoch(s, listEpoch);
+            listEpoch = epoch;
+            if (s instanceof Conditional) {
+                Conditional c = (Conditional) s;
+                list = innerList(c.thenbranch, epoch, from, to);
+                if (list == null && c.elsebranch instanceof Block)
+                    list = innerList(c.elsebranch, epoch, from, to);
+            } else if (s instanceof Loop) {
+                list = innerList(((Loop) s).body, epoch, from, to);
+            }
+        }
+        if (members == null)
+            return false;
+
+        Statement old = (Statement) members.elementAt(index);
+        long span = current(old.span, epoch);
+        int start = Span.start(span);
+        int end = Span.end(span) + delta;
+        // The statement's text is contiguous once the gap follows it
+        moveGap(end);
+        Block replacement;
+        try {
+            TokenStream ts = new TokenStream(ByteBuffer.wrap(bytes, start, end - start), name, symbols);
+            replacement = new ConcreteSyntax(ts).statementsTo(end);
+        } catch (KaySyntaxException e) {
+            return false;
+        }
+
+        if (pending == MAX_PENDING)
+            settleSpans();
+        this.from[pending] = from;
+        this.to[pending] = to;
+        this.delta[pending] = delta;
+        pending++;
+        members.remove(index);
+        epochs.remove(old);
+        for (Object s : replacement.blockmembers)
+            epochs.put((Statement) s, pending);
+        members.addAll(index, replacement.blockmembers);
+        reparsed = replacement.blockmembers.size();
+        settled = false;
+        return true;
+    }
+
+    private static boolean inside(long span, int from, int to) {
+        return span != Span.NONE && Span.start(span) < from && to < Span.end(span);
+    }
+
+    // The members of b if the edit is inside its braces
+    private Vector innerList(Statement b, int epoch, int from, int to) {
+        return b instanceof Block && inside(current(b.span, epoch), from, to) ? ((Block) b).blockmembers : null;
+    }
+
+    // Index of the member of list strictly containing [from, to), or -1;
+    // members are in source order
+    private int find(Vector list, int epoch, int from, int to) {
+        int lo = 0;
+        int hi = list.size() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            Statement s = (Statement) list.elementAt(mid);
+            long span = current(s.span, epoch(s, epoch));
+            if (span == Span.NONE)
+                return -1;
+            if (Span.end(span) <= from)
+                lo = mid + 1;
+            else if (Span.start(span) >= to)
+                hi = mid - 1;
+            else
+                return inside(span, from, to) ? mid : -1;
+        }
+        return -1;
+    }
+
+    // Moves the spans of s and its children to current coordinates.
+    // Subtrees ending at or before floor[epoch] need nothing.
+    private void settle(Statement s, int epoch, int[] floor) {
+        epoch = epoch(s, epoch);
+        if (epoch == pending || (s.span != Span.NONE && Span.end(s.span) <= floor[epoch]))
+            return;
+        s.span = current(s.span, epoch);
+        if (s instanceof Assignment) {
+            Assignment a = (Assignment) s;
+            settle(a.target, epoch, floor);
+            settle(a.source, epoch, floor);
+        } else if (s instanceof Block) {
+            Vector members = ((Block) s).blockmembers;
+            for (int i = 0, n = members.size(); i < n; i++)
+                settle((Statement) members.elementAt(i), epoch, floor);
+        } else if (s instanceof Conditional) {
+            Conditional c = (Conditional) s;
+            settle(c.test, epoch, floor);
+            settle(c.thenbranch, epoch, floor);
+            if (c.elsebranch != null)
+                settle(c.elsebranch, epoch, floor);
+        } else if (s instanceof Loop) {
+            Loop l = (Loop) s;
+            settle(l.test, epoch, floor);
+            settle(l.body, epoch, floor);
+        }
+    }
+
+    private void settle(Expression e, int epoch, int[] floor) {
+        if (e.span != Span.NONE && Span.end(e.span) <= floor[epoch])
+            return;
+        e.span = current(e.span, epoch);
+        if (e instanceof Binary) {
+            settle(((Binary) e).term1, epoch, floor);
+            settle(((Binary) e).term2, epoch, floor);
+        } else if (e instanceof Unary) {
+            settle(((Unary) e).term, epoch, floor);
+        }
+    }
+}
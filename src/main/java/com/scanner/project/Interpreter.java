@@ -0,0 +1,133 @@
+package com.scanner.project;
+
+// Tree-walking interpreter for KAY programs
+//
+// The state is one int slot per declared variable, laid out by
+// SlotLayout: declaration order, bools as 0 and 1, and slots found
+// through the dense id of each interned Symbol, so evaluation does no map
+// lookups, no boxing and no Value allocation. Variables start at 0 and false.
+// Both operands of every operator are evaluated. Division by zero throws
+// ArithmeticException; a variable that was never declared is reported
+// when it is first evaluated or assigned.
+
+public class Interpreter {
+    private final Program program;
+    private final SlotLayout layout;
+    private final int[] slots;
+
+    public Interpreter(Program p) {
+        program = p;
+        layout = new SlotLayout(p.decpart);
+        slots = new int[layout.size()];
+    }
+
+    // Runs the program body from the current state
+    public void run() {
+        execute(program.body);
+    }
+
+    // Slots in declaration order; bools are 0 or 1
+    public int[] slots() {
+        return slots;
+    }
+
+    public int intValue(String name) {
+        return slots[slot(name)];
+    }
+
+    public boolean boolValue(String name) {
+        return slots[slot(name)] != 0;
+    }
+
+    // "name = value" for every declared variable, one per line
+    public String state() {
+        return layout.state(slots);
+    }
+
+    private int slot(String name) {
+        int s = layout.slot(name);
+        if (s < 0)
+            throw new RuntimeException("Runtime error - Undeclared variable: " + name);
+        return s;
+    }
+
+    private int slot(Variable v) {
+        int s = layout.slot(v);
+        if (s < 0)
+            throw new RuntimeException("Runtime error - Undeclared variable: " + v.id);
+        return s;
+    }
+
+    private void execute(Statement s) {
+        if (s instanceof Assignment) {
+            Assignment a = (Assignment) s;
+            int value = eval(a.source);
+            slots[slot(a.target)] = value;
+        } else if (s instanceof Block) {
+            Block b = (Block) s;
+            for (int i = 0, n = b.blockmembers.size(); i < n; i++)
+                execute((Statement) b.blockmembers.elementAt(i));
+        } else if (s instanceof Loop) {
+            Loop l = (Loop) s;
+            while (eval(l.test) != 0)
+                execute(l.body);
+        } else if (s instanceof Conditional) {
+            Conditional c = (Conditional) s;
+            if (eval(c.test) != 0)
+                execute(c.thenbranch);
+            else if (c.elsebranch != null)
+                execute(c.elsebranch);
+        }
+        // Skip does nothing
+    }
+
+    private int eval(Expression e) {
+        if (e instanceof Binary) {
+            Binary b = (Binary) e;
+            int x = eval(b.term1);
+            int y = eval(b.term2);
+            switch (b.op.code) {
+                case Operator.OP_PLUS: return x + y;
+                case Operator.OP_MINUS: return x - y;
+                case Operator.OP_TIMES: return x * y;
+                case Operator.OP_DIV: return x / y;
+                case Operator.OP_LT: return x < y ? 1 : 0;
+                case Operator.OP_LE: return x <= y ? 1 : 0;
+                case Operator.OP_GT: return x > y ? 1 : 0;
+                case Operator.OP_GE: return x >= y ? 1 : 0;
+                case Operator.OP_EQ: return x == y ? 1 : 0;
+                case Operator.OP_NE: return x != y ? 1 : 0;
+                case Operator.OP_AND: return x & y;
+                case Operator.OP_OR: return x | y;
+                default:
+                    throw new RuntimeException("Runtime error - Unknown operator: " + b.op.val);
+            }
+        } else if (e instanceof Variable) {
+            return slots[slot((Variable) e)];
+        } else if (e instanceof Value) {
+            Value v = (Value) e;
+            return v.type.isBoolean() ? (v.boolValue ? 1 : 0) : v.intValue;
+        } else if (e instanceof Unary) {
+            Unary u = (Unary) e;
+            int x = eval(u.term);
+            switch (u.op.code) {
+                case Operator.OP_NOT: return x ^ 1;
+                case Operator.OP_MINUS: return -x;
+                default:
+                    throw new RuntimeException("Runtime error - Unknown operator: " + u.op.val);
+            }
+        }
+        throw new RuntimeException("Runtime error - Unknown expression: " + e);
+    }
+
+    // Usage: Interpreter <program.kay>; prints the final state
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.out.println("Usage: Interpreter <program.kay>");
+            return;
+        }
+        Interpreter in = new Interpreter(new ConcreteSyntax(new TokenStream(args[0])).program());
+        in.run();
+        System.out.print(in.state());
+    }
+}
@@ -0,0 +1,497 @@
+package com.scanner.project;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+import java.util.HashMap;
+
+// Compiles a KAY program to a JVM class and loads it as a hidden class
+//
+// Java 17 has no java.lang.classfile, so the class file is written by
+// hand. It targets class file version 49, which the JVM verifies by type
+// inference, so no StackMapTable has to be computed. The class extends
+// CompiledProgram; its run(int[]) keeps every declared variable in a JVM
+// local, tests if and while conditions with real branches (relational
+// tests become a single if_icmp), and only touches the slots array on
+// entry and exit; a catch-all handler stores the locals back before an
+// exception leaves, so a failed run leaves the same partial state as the
+// Interpreter's. Semantics match Interpreter: both operands are always
+// evaluated, && and || are bitwise on 0 and 1, division by zero throws
+// ArithmeticException and an undeclared variable throws when reached.
+// A program whose body does not fit in one method is rejected with
+// "Compile error - ..." so that callers can fall back to the interpreter.
+
+public class KayCompiler {
+
+    // Largest Code attribute the JVM accepts
+    private static final int MAX_CODE = 65535;
+    // Locals 0 and 1 are this and the slots array
+    private static final int FIRST_LOCAL = 2;
+
+    private static final String CLASS_NAME = "com/scanner/project/CompiledKay";
+    private static final String SUPER_NAME = "com/scanner/project/CompiledProgram";
+
+    private final Program program;
+    private final SlotLayout layout;
+
+    private final ConstantPool pool = new ConstantPool();
+    private final Code code = new Code();
+    // Exception table of run(): start, end, handler and catch type of each
+    // entry
+    private int[] handlers = new int[0];
+
+    private KayCompiler(Program p) {
+        program = p;
+        layout = new SlotLayout(p.decpart);
+    }
+
+    public static CompiledProgram compile(Program p) {
+        KayCompiler c = new KayCompiler(p);
+        byte[] bytes = c.classFile();
+        try {
+            Class<?> k = MethodHandles.lookup().defineHiddenClass(bytes, true).lookupClass();
+            CompiledProgram cp = (CompiledProgram) k.getDeclaredConstructor().newInstance();
+            cp.layout = c.layout;
+            return cp;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Compile error - cannot load class: " + e, e);
+        }
+    }
+
+    // The class file for p, as loaded by compile()
+    static byte[] classFile(Program p) {
+        return new KayCompiler(p).classFile();
+    }
+
+    private byte[] classFile() {
+        int thisClass = pool.classRef(CLASS_NAME);
+        int superClass = pool.classRef(SUPER_NAME);
+        int superInit = pool.methodRef(SUPER_NAME, "<init>", "()V");
+        int undeclared = pool.methodRef(SUPER_NAME, "undeclared", "(Ljava/lang/String;)Ljava/lang/RuntimeException;");
+        int codeName = pool.utf8("Code");
+        int initName = pool.utf8("<init>");
+        int initType = pool.utf8("()V");
+        int runName = pool.utf8("run");
+        int runType = pool.utf8("([I)V");
+
+        byte[] run = runMethod(undeclared);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(run.length + 1024);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(49);
+            pool.write(out);
+            out.writeShort(0x0001 | 0x0010 | 0x0020);   // public final super
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0);                          // interfaces
+            out.writeShort(0);                          // fields
+            out.writeShort(2);                          // methods
+
+            // public <init>() { super(); }
+            out.writeShort(0x0001);
+            out.writeShort(initName);
+            out.writeShort(initType);
+            out.writeShort(1);
+            byte[] init = { 0x2a, (byte) 0xb7, (byte) (superInit >> 8), (byte) superInit, (byte) 0xb1 };
+            writeCode(out, codeName, 1, 1, init, new int[0]);
+
+            // public void run(int[] slots)
+            out.writeShort(0x0001);
+            out.writeShort(runName);
+            out.writeShort(runType);
+            out.writeShort(1);
+            writeCode(out, codeName, code.maxStack, FIRST_LOCAL + layout.size(), run, handlers);
+
+            out.writeShort(0);                          // attributes
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeCode(DataOutputStream out, int codeName, int maxStack, int maxLocals, byte[] body,
+            int[] handlers) throws IOException {
+        out.writeShort(codeName);
+        out.writeInt(12 + body.length + 2 * handlers.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(body.length);
+        out.write(body);
+        out.writeShort(handlers.length / 4);            // exception table
+        for (int h : handlers)
+            out.writeShort(h);
+        out.writeShort(0);                              // attributes
+    }
+
+    private byte[] runMethod(int undeclared) {
+        code.undeclared = undeclared;
+        for (int i = 0; i < layout.size(); i++) {
+            code.op(0x2b, 1);                           // aload_1
+            code.constant(i, pool);
+            code.op(0x2e, -1);                          // iaload
+            code.local(0x36, FIRST_LOCAL + i, -1);      // istore
+        }
+        int start = code.size();
+        statement(program.body);
+        int end = code.size();
+        storeLocals();
+        code.op(0xb1, 0);                               // return
+        if (end > start && layout.size() > 0) {
+            // catch (Throwable t) { store the locals; throw t; }
+            handlers = new int[] { start, end, code.size(), 0 };
+            code.depth = 1;
+            storeLocals();
+            code.op(0xbf, -1);                          // athrow
+        }
+        return code.toByteArray();
+    }
+
+    // slots[i] = local i, for every slot
+    private void storeLocals() {
+        for (int i = 0; i < layout.size(); i++) {
+            code.op(0x2b, 1);
+            code.constant(i, pool);
+            code.local(0x15, FIRST_LOCAL + i, 1);       // iload
+            code.op(0x4f, -3);                          // iastore
+        }
+    }
+
+    // Local of v, or -1 if it was never declared
+    private int local(Variable v) {
+        int slot = layout.slot(v);
+        return slot < 0 ? -1 : FIRST_LOCAL + slot;
+    }
+
+    private void statement(Statement s) {
+        if (s instanceof Assignment) {
+            Assignment a = (Assignment) s;
+            expression(a.source);
+            int l = local(a.target);
+            if (l < 0) {
+                code.op(0x57, -1);                      // pop
+                undeclared(a.target);
+            } else {
+                code.local(0x36, l, -1);
+            }
+        } else if (s instanceof Block) {
+            Block b = (Block) s;
+            for (int i = 0, n = b.blockmembers.size(); i < n; i++)
+                statement((Statement) b.blockmembers.elementAt(i));
+        } else if (s instanceof Loop) {
+            Loop l = (Loop) s;
+            int top = code.size();
+            Label exit = new Label();
+            branchIfFalse(l.test, exit);
+            statement(l.body);
+            code.jump(0xa7, top, 0);                    // goto
+            code.bind(exit);
+        } else if (s instanceof Conditional) {
+            Conditional c = (Conditional) s;
+            Label otherwise = new Label();
+            branchIfFalse(c.test, otherwise);
+            statement(c.thenbranch);
+            if (c.elsebranch != null) {
+                Label end = new Label();
+                code.branch(0xa7, end, 0);
+                code.bind(otherwise);
+                statement(c.elsebranch);
+                code.bind(end);
+            } else {
+                code.bind(otherwise);
+            }
+        }
+        // Skip compiles to nothing
+    }
+
+    // Jumps to target when test is false; relational tests branch directly
+    private void branchIfFalse(Expression test, Label target) {
+        if (test instanceof Binary) {
+            int negated = negatedCompare(((Binary) test).op.code);
+            if (negated != 0) {
+                Binary b = (Binary) test;
+                expression(b.term1);
+                expression(b.term2);
+                code.branch(negated, target, -2);
+                return;
+            }
+        }
+        expression(test);
+        code.branch(0x99, target, -1);                  // ifeq
+    }
+
+    // if_icmp<op> opcode that branches when the comparison is false
+    private static int negatedCompare(int op) {
+        switch (op) {
+            case Operator.OP_LT: return 0xa2;           // if_icmpge
+            case Operator.OP_LE: return 0xa3;           // if_icmpgt
+            case Operator.OP_GT: return 0xa4;           // if_icmple
+            case Operator.OP_GE: return 0xa1;           // if_icmplt
+            case Operator.OP_EQ: return 0xa0;           // if_icmpne
+            case Operator.OP_NE: return 0x9f;           // if_icmpeq
+            default: return 0;
+        }
+    }
+
+    // Leaves the value of e on the stack
+    private void expression(Expression e) {
+        if (e instanceof Binary) {
+            Binary b = (Binary) e;
+            expression(b.term1);
+            expression(b.term2);
+            switch (b.op.code) {
+                case Operator.OP_PLUS: code.op(0x60, -1); return;     // iadd
+                case Operator.OP_MINUS: code.op(0x64, -1); return;    // isub
+                case Operator.OP_TIMES: code.op(0x68, -1); return;    // imul
+                case Operator.OP_DIV: code.op(0x6c, -1); return;      // idiv
+                case Operator.OP_AND: code.op(0x7e, -1); return;      // iand
+                case Operator.OP_OR: code.op(0x80, -1); return;       // ior
+                default:
+                    int negated = negatedCompare(b.op.code);
+                    if (negated == 0)
+                        throw new IllegalStateException("Compile error - Unknown operator: " + b.op.val);
+                    // x op y ? 1 : 0
+                    Label no = new Label();
+                    Label end = new Label();
+                    code.branch(negated, no, -2);
+                    code.op(0x04, 1);                   // iconst_1
+                    code.branch(0xa7, end, -1);
+                    code.bind(no);
+                    code.op(0x03, 1);                   // iconst_0
+                    code.bind(end);
+            }
+        } else if (e instanceof Variable) {
+            Variable v = (Variable) e;
+            int l = local(v);
+            if (l < 0) {
+                undeclared(v);
+                code.op(0x03, 1);                       // unreachable; keeps the depth count
+            } else {
+                code.local(0x15, l, 1);
+            }
+        } else if (e instanceof Value) {
+            Value v = (Value) e;
+            code.constant(v.type.isBoolean() ? (v.boolValue ? 1 : 0) : v.intValue, pool);
+        } else if (e instanceof Unary) {
+            Unary u = (Unary) e;
+            expression(u.term);
+            switch (u.op.code) {
+                case Operator.OP_NOT:
+                    code.op(0x04, 1);
+                    code.op(0x82, -1);                  // ixor
+                    return;
+                case Operator.OP_MINUS:
+                    code.op(0x74, 0);                   // ineg
+                    return;
+                default:
+                    throw new IllegalStateException("Compile error - Unknown operator: " + u.op.val);
+            }
+        } else {
+            throw new IllegalStateException("Compile error - Unknown expression: " + e);
+        }
+    }
+
+    // throw CompiledProgram.undeclared(name)
+    private void undeclared(Variable v) {
+        code.ldc(pool.string(v.id));
+        code.op(0xb8, 0);                               // invokestatic
+        code.u2(code.undeclared);
+        code.op(0xbf, -1);                              // athrow
+    }
+
+    // A forward branch target
+    private static final class Label {
+        // Offsets of the opcodes and their 16-bit operands still to patch
+        int[] fixups = new int[4];
+        int count;
+    }
+
+    // The bytecode of one method and its running stack depth
+    private static final class Code {
+        private byte[] buf = new byte[256];
+        private int size;
+        int depth;
+        int maxStack;
+        int undeclared;
+
+        int size() {
+            return size;
+        }
+
+        private void u1(int b) {
+            if (size == buf.length)
+                buf = Arrays.copyOf(buf, size * 2);
+            buf[size++] = (byte) b;
+        }
+
+        void u2(int v) {
+            u1(v >> 8);
+            u1(v);
+        }
+
+        private void stack(int delta) {
+            depth += delta;
+            if (depth > maxStack)
+                maxStack = depth;
+        }
+
+        void op(int opcode, int delta) {
+            u1(opcode);
+            stack(delta);
+        }
+
+        // iload/istore with the short forms and wide for locals past 255
+        void local(int opcode, int index, int delta) {
+            if (index <= 3) {
+                u1((opcode == 0x15 ? 0x1a : 0x3b) + index);
+            } else if (index <= 255) {
+                u1(opcode);
+                u1(index);
+            } else {
+                u1(0xc4);                               // wide
+                u1(opcode);
+                u2(index);
+            }
+            stack(delta);
+        }
+
+        void constant(int value, ConstantPool pool) {
+            if (value >= -1 && value <= 5) {
+                op(0x03 + value, 1);                    // iconst_<n>
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                op(0x10, 1);                            // bipush
+                u1(value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                op(0x11, 1);                            // sipush
+                u2(value);
+            } else {
+                ldc(pool.integer(value));
+            }
+        }
+
+        void ldc(int index) {
+            if (index <= 255) {
+                op(0x12, 1);
+                u1(index);
+            } else {
+                op(0x13, 1);                            // ldc_w
+                u2(index);
+            }
+        }
+
+        // Backward jump to a known position
+        void jump(int opcode, int target, int delta) {
+            int at = size;
+            op(opcode, delta);
+            u2(offset(target - at));
+        }
+
+        // Forward jump to a label that is bound later
+        void branch(int opcode, Label target, int delta) {
+            if (target.count == target.fixups.length)
+                target.fixups = Arrays.copyOf(target.fixups, target.count * 2);
+            target.fixups[target.count++] = size;
+            op(opcode, delta);
+            u2(0);
+        }
+
+        void bind(Label label) {
+            for (int i = 0; i < label.count; i++) {
+                int at = label.fixups[i];
+                int offset = offset(size - at);
+                buf[at + 1] = (byte) (offset >> 8);
+                buf[at + 2] = (byte) offset;
+            }
+        }
+
+        // Branch offsets are 16 bits; anything longer means too much code
+        private int offset(int offset) {
+            if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE)
+                throw tooLarge();
+            return offset;
+        }
+
+        byte[] toByteArray() {
+            if (size > MAX_CODE)
+                throw tooLarge();
+            return Arrays.copyOf(buf, size);
+        }
+
+        private IllegalStateException tooLarge() {
+            return new IllegalStateException("Compile error - Program too large for one method: " + size + " bytes");
+        }
+    }
+
+    // Constant pool entries, shared when equal
+    private static final class ConstantPool {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final HashMap<String, Integer> entries = new HashMap<>();
+        private int count = 1;
+
+        private int entry(String key, int tag, Object a, Object b) {
+            Integer index = entries.get(key);
+            if (index != null)
+                return index;
+            try {
+                out.writeByte(tag);
+                if (tag == 1)
+                    out.writeUTF((String) a);
+                else if (tag == 3)
+                    out.writeInt((Integer) a);
+                else if (tag == 7 || tag == 8)
+                    out.writeShort((Integer) a);
+                else {
+                    out.writeShort((Integer) a);
+                    out.writeShort((Integer) b);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (count == 0xFFFF)
+                throw new IllegalStateException("Compile error - Too many constants");
+            entries.put(key, count);
+            return count++;
+        }
+
+        int utf8(String s) {
+            return entry("U" + s, 1, s, null);
+        }
+
+        int integer(int v) {
+            return entry("I" + v, 3, v, null);
+        }
+
+        int classRef(String name) {
+            return entry("C" + name, 7, utf8(name), null);
+        }
+
+        int string(String s) {
+            return entry("S" + s, 8, utf8(s), null);
+        }
+
+        int methodRef(String owner, String name, String type) {
+            int nameAndType = entry("N" + name + ' ' + type, 12, utf8(name), utf8(type));
+            return entry("M" + owner + '.' + name + type, 10, classRef(owner), nameAndType);
+        }
+
+        void write(DataOutputStream to) throws IOException {
+            to.writeShort(count);
+            bytes.writeTo(to);
+        }
+    }
+
+    // Usage: KayCompiler <program.kay>; prints the final state
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.out.println("Usage: KayCompiler <program.kay>");
+            return;
+        }
+        CompiledProgram cp = compile(new ConcreteSyntax(new TokenStream(args[0])).program());
+        System.out.print(cp.state(cp.run()));
+    }
+}
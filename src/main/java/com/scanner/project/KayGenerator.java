@@ -0,0 +1,351 @@
+package com.scanner.project;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+
+// Deterministic generator of synthetic KAY programs
+//
+// Output only uses the grammar ConcreteSyntax accepts, and every compound
+// subexpression is parenthesized so that the flat precedence of
+// expression() still yields well-typed trees. Programs always terminate:
+// each while loop counts a reserved counter variable up to a small bound,
+// and no other statement assigns the counters. Divisors are nonzero
+// literals. The same seed and settings always produce the same text.
+//
+// The program is written to a Writer in chunks, so arbitrarily large
+// outputs need only a small buffer. From the command line:
+//
+//   java com.scanner.project.KayGenerator [options] <out.kay | ->
+//     --seed N          random seed (default 1)
+//     --declarations N  declared variables besides loop counters (default 8)
+//     --statements N    top-level statements (default 100)
+//     --bytes N         instead, emit top-level statements until the
+//                       output reaches N bytes (suffixes k, m, g)
+//     --depth N         maximum expression depth (default 3)
+//     --nesting N       maximum if/while nesting (default 2)
+//     --comments P      probability of a comment before a statement (default 0.1)
+//     --invalid P       probability of a deliberate syntax error per statement (default 0)
+
+public class KayGenerator {
+    private long seed = 1;
+    private int declarations = 8;
+    private long statements = 100;
+    private long targetBytes;
+    private int expressionDepth = 3;
+    private int nesting = 2;
+    private double commentDensity = 0.1;
+    private double invalidRate;
+
+    // Bound of every generated while loop
+    private static final int LOOP_BOUND = 4;
+    private static final int FLUSH_CHARS = 1 << 16;
+
+    // Per-run state
+    private SplittableRandom random;
+    private StringBuilder buf;
+    private Writer out;
+    private long written;
+    private int intVars;
+    private int boolVars;
+
+    public KayGenerator() {
+    }
+
+    public KayGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    public KayGenerator seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    // Declared variables besides the loop counters; at least three so
+    // that there is always an integer and a bool to assign
+    public KayGenerator declarations(int n) {
+        declarations = Math.max(3, n);
+        return this;
+    }
+
+    public KayGenerator statements(long n) {
+        statements = n;
+        targetBytes = 0;
+        return this;
+    }
+
+    // Emit top-level statements until the output reaches n bytes
+    public KayGenerator targetBytes(long n) {
+        targetBytes = n;
+        return this;
+    }
+
+    public KayGenerator expressionDepth(int n) {
+        expressionDepth = Math.max(1, n);
+        return this;
+    }
+
+    public KayGenerator nesting(int n) {
+        nesting = Math.max(0, n);
+        return this;
+    }
+
+    public KayGenerator commentDensity(double p) {
+        commentDensity = p;
+        return this;
+    }
+
+    public KayGenerator invalidRate(double p) {
+        invalidRate = p;
+        return this;
+    }
+
+    // Writes one program to w; w is flushed but not closed
+    public void generate(Writer w) throws IOException {
+        random = new SplittableRandom(seed);
+        buf = new StringBuilder(FLUSH_CHARS + 1024);
+        out = w;
+        written = 0;
+        intVars = declarations - declarations / 3;
+        boolVars = declarations / 3;
+
+        buf.append("main {\n");
+        declare("integer", "x", intVars);
+        declare("bool", "b", boolVars);
+        declare("integer", "k", nesting);
+        long n = 0;
+        while (targetBytes > 0 ? written + buf.length() < targetBytes : n < statements) {
+            statement(1);
+            n++;
+            if (buf.length() >= FLUSH_CHARS)
+                flush();
+        }
+        buf.append("}\n");
+        flush();
+        out.flush();
+    }
+
+    // The program as a String; for small programs and tests
+    public String generate() {
+        StringWriter sw = new StringWriter();
+        try {
+            generate(sw);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return sw.toString();
+    }
+
+    private void flush() throws IOException {
+        out.write(buf.toString());
+        written += buf.length();
+        buf.setLength(0);
+    }
+
+    private void declare(String type, String prefix, int count) {
+        for (int i = 0; i < count; i += 8) {
+            indent(1);
+            buf.append(type).append(' ');
+            for (int j = i; j < Math.min(count, i + 8); j++) {
+                if (j > i)
+                    buf.append(", ");
+                buf.append(prefix).append(j);
+            }
+            buf.append(";\n");
+        }
+    }
+
+    private void indent(int level) {
+        for (int i = 0; i < level; i++)
+            buf.append("    ");
+    }
+
+    private void statement(int level) {
+        if (commentDensity > 0 && random.nextDouble() < commentDensity) {
+            indent(level);
+            buf.append("// note ").append(random.nextInt(1000)).append('\n');
+        }
+        boolean invalid = invalidRate > 0 && random.nextDouble() < invalidRate;
+        int choice = level <= nesting ? random.nextInt(10) : 0;
+        if (choice == 8)
+            ifStatement(level, invalid);
+        else if (choice == 9)
+            loop(level, invalid);
+        else
+            assignment(level, invalid);
+    }
+
+    private void assignment(int level, boolean invalid) {
+        indent(level);
+        boolean toBool = random.nextInt(3) == 0;
+        buf.append(toBool ? 'b' : 'x').append(random.nextInt(toBool ? boolVars : intVars));
+        if (invalid && random.nextBoolean())
+            buf.append(" = ");
+        else
+            buf.append(" := ");
+        if (toBool)
+            boolExpression(expressionDepth);
+        else
+            intExpression(expressionDepth);
+        buf.append(invalid ? "\n" : ";\n");
+    }
+
+    private void ifStatement(int level, boolean invalid) {
+        indent(level);
+        buf.append(invalid ? "if " : "if (");
+        boolExpression(expressionDepth);
+        buf.append(") {\n");
+        block(level + 1);
+        indent(level);
+        buf.append('}');
+        if (random.nextBoolean()) {
+            buf.append(" else {\n");
+            block(level + 1);
+            indent(level);
+            buf.append('}');
+        }
+        buf.append('\n');
+    }
+
+    private void loop(int level, boolean invalid) {
+        String counter = "k" + (level - 1);
+        indent(level);
+        buf.append(counter).append(" := 0;\n");
+        indent(level);
+        buf.append("while (").append(counter).append(" < ").append(1 + random.nextInt(LOOP_BOUND));
+        buf.append(invalid ? " {\n" : ") {\n");
+        block(level + 1);
+        indent(level + 1);
+        buf.append(counter).append(" := ").append(counter).append(" + 1;\n");
+        indent(level);
+        buf.append("}\n");
+    }
+
+    private void block(int level) {
+        int n = random.nextInt(4);
+        for (int i = 0; i < n; i++)
+            statement(level);
+    }
+
+    // Writes an integer expression; false if it is a single variable or
+    // literal
+    private boolean intExpression(int depth) {
+        if (depth <= 1 || random.nextInt(3) == 0) {
+            if (random.nextBoolean())
+                buf.append('x').append(random.nextInt(intVars));
+            else
+                buf.append(random.nextInt(1000));
+            return false;
+        }
+        int op = random.nextInt(4);
+        subexpression(true, depth - 1);
+        buf.append(op == 0 ? " + " : op == 1 ? " - " : op == 2 ? " * " : " / ");
+        if (op == 3)
+            buf.append(1 + random.nextInt(9));
+        else
+            subexpression(true, depth - 1);
+        return true;
+    }
+
+    // As intExpression, for a bool expression
+    private boolean boolExpression(int depth) {
+        if (depth <= 1 || random.nextInt(4) == 0) {
+            int leaf = random.nextInt(3);
+            if (leaf == 0)
+                buf.append('b').append(random.nextInt(boolVars));
+            else if (leaf == 1)
+                buf.append(random.nextBoolean() ? "True" : "False");
+            else {
+                intExpression(1);
+                buf.append(relationalOp());
+                intExpression(1);
+                return true;
+            }
+            return false;
+        }
+        int kind = random.nextInt(3);
+        if (kind == 0) {
+            subexpression(true, depth - 1);
+            buf.append(relationalOp());
+            subexpression(true, depth - 1);
+        } else {
+            subexpression(false, depth - 1);
+            buf.append(kind == 1 ? (random.nextBoolean() ? " && " : " || ")
+                                 : (random.nextBoolean() ? " == " : " != "));
+            subexpression(false, depth - 1);
+        }
+        return true;
+    }
+
+    private String relationalOp() {
+        switch (random.nextInt(6)) {
+            case 0: return " < ";
+            case 1: return " <= ";
+            case 2: return " > ";
+            case 3: return " >= ";
+            case 4: return " == ";
+            default: return " != ";
+        }
+    }
+
+    // An operand of a binary operator, parenthesized unless it is a leaf.
+    // The '(' is written first and taken back after a leaf, which moves
+    // only the leaf's few characters.
+    private void subexpression(boolean integer, int depth) {
+        int mark = buf.length();
+        buf.append('(');
+        if (integer ? intExpression(depth) : boolExpression(depth))
+            buf.append(')');
+        else
+            buf.deleteCharAt(mark);
+    }
+
+    public static void main(String[] args) throws IOException {
+        KayGenerator g = new KayGenerator();
+        String target = null;
+        for (int i = 0; i < args.length; i++) {
+            String a = args[i];
+            if (!a.startsWith("--")) {
+                target = a;
+                continue;
+            }
+            if (i + 1 == args.length) {
+                System.out.println("Missing value for option: " + a);
+                return;
+            }
+            String v = args[++i];
+            switch (a) {
+                case "--seed": g.seed(Long.parseLong(v)); break;
+                case "--declarations": g.declarations(Integer.parseInt(v)); break;
+                case "--statements": g.statements(Long.parseLong(v)); break;
+                case "--bytes": g.targetBytes(parseSize(v)); break;
+                case "--depth": g.expressionDepth(Integer.parseInt(v)); break;
+                case "--nesting": g.nesting(Integer.parseInt(v)); break;
+                case "--comments": g.commentDensity(Double.parseDouble(v)); break;
+                case "--invalid": g.invalidRate(Double.parseDouble(v)); break;
+                default:
+                    System.out.println("Unknown option: " + a);
+                    return;
+            }
+        }
+        if (target == null) {
+            System.out.println("Usage: KayGenerator [--seed N] [--declarations N] [--statements N] [--bytes N]"
+                    + " [--depth N] [--nesting N] [--comments P] [--invalid P] <out.kay | ->");
+            return;
+        }
+        if (target.equals("-")) {
+            Writer w = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+            g.generate(w);
+        } else {
+            try (Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(target), StandardCharsets.UTF_8))) {
+                g.generate(w);
+            }
+        }
+    }
+
+    private static long parseSize(String s) {
+        char unit = Character.toLowerCase(s.charAt(s.length() - 1));
+        long scale = unit == 'k' ? 1L << 10 : unit == 'm' ? 1L << 20 : unit == 'g' ? 1L << 30 : 1;
+        return Long.parseLong(scale == 1 ? s : s.substring(0, s.length() - 1)) * scale;
+    }
+}
@@ -0,0 +1,91 @@
+package com.scanner.project;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+
+// A KAY program to parse: UTF-8 bytes and an optional name for error
+// positions
+//
+// Bytes are used where they are: byte[] slices and ByteBuffers are
+// wrapped, not copied, and files are memory-mapped. Text is encoded to
+// UTF-8 once and streams are read once, into a fresh SourceBuffer; use a
+// SourceBuffer directly to reuse one array across many sources.
+
+public final class KaySource {
+    private final ByteBuffer bytes;
+    private final String name;
+
+    private KaySource(ByteBuffer bytes, String name) {
+        this.bytes = bytes;
+        this.name = name;
+    }
+
+    public static KaySource of(byte[] utf8) {
+        return of(utf8, 0, utf8.length);
+    }
+
+    public static KaySource of(byte[] utf8, int offset, int length) {
+        return new KaySource(ByteBuffer.wrap(utf8, offset, length), null);
+    }
+
+    // The bytes between position and limit; the buffer is not modified
+    public static KaySource of(ByteBuffer utf8) {
+        return new KaySource(utf8.duplicate(), null);
+    }
+
+    public static KaySource of(CharSequence text) {
+        return new SourceBuffer(text.length()).encode(text);
+    }
+
+    public static KaySource of(char[] chars, int offset, int length) {
+        return new SourceBuffer(length).encode(chars, offset, length);
+    }
+
+    // Reads in to its end; in is not closed
+    public static KaySource of(InputStream in) throws IOException {
+        return new SourceBuffer().read(in);
+    }
+
+    // Reads in to its end; in is not closed
+    public static KaySource of(ReadableByteChannel in) throws IOException {
+        return new SourceBuffer().read(in);
+    }
+
+    // Memory-maps filename, as new TokenStream(filename) does: a missing
+    // file is reported and empty, a file over 2 GB an UncheckedIOException
+    public static KaySource file(String filename) {
+        return new KaySource(TokenStream.map(filename), filename);
+    }
+
+    // Memory-maps path, reporting every failure as an IOException
+    public static KaySource file(Path path) throws IOException {
+        return new KaySource(TokenStream.map(path), path.toString());
+    }
+
+    // The same bytes, reported under name in error positions
+    public KaySource named(String name) {
+        return new KaySource(bytes, name);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    // The source bytes, between position and limit of a fresh view
+    public ByteBuffer bytes() {
+        return bytes.duplicate();
+    }
+
+    // Size of the source in bytes
+    public int size() {
+        return bytes.remaining();
+    }
+
+    // A scanner over the source
+    public TokenStream tokens() {
+        return new TokenStream(bytes(), name);
+    }
+}
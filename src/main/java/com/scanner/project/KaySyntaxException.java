@@ -0,0 +1,119 @@
+package com.scanner.project;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+
+// A scan or syntax error with its position
+//
+// Syntax errors are thrown often when many invalid snippets are checked,
+// so this exception is cheap: it captures no stack trace, and the message,
+// line and column are only worked out when asked for. getMessage() is the
+// plain message ("Syntax error - Expecting: ..."); getLocalizedMessage(),
+// and so toString(), put the position in front as "file:line:col: ".
+// The LineMap is not serialized; the message and position are worked out
+// when the exception is written, so a deserialized one still has them.
+
+public class KaySyntaxException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final transient LineMap lines;
+    private final int offset;
+    // The file name, set when serialized
+    private String file;
+    // Set by resolve(); 0 until then
+    private int line;
+    private int column;
+
+    // The message is head + (expected + " But saw: ") + kind + " = " + text,
+    // built on first use
+    private String message;
+    private final String head;
+    private final String expected;
+    private final TokenKind saw;
+    private final String text;
+
+    public KaySyntaxException(String message, LineMap lines, int offset) {
+        super(null, null, false, false);
+        this.message = message;
+        this.lines = lines;
+        this.offset = offset;
+        head = expected = text = null;
+        saw = null;
+    }
+
+    private KaySyntaxException(String head, String expected, TokenCursor at) {
+        super(null, null, false, false);
+        this.head = head;
+        this.expected = expected;
+        saw = at.kind();
+        // Terminals and EOF have constant text; only other tokens decode
+        text = at.text();
+        lines = at.lines();
+        offset = at.start();
+    }
+
+    // "Syntax error - Expecting: <expected> But saw: <current token>"
+    static KaySyntaxException expecting(String expected, TokenCursor at) {
+        return new KaySyntaxException("Syntax error - Expecting: ", expected, at);
+    }
+
+    // head followed by the current token, as in "... saw: Separator = ;"
+    static KaySyntaxException unexpected(String head, TokenCursor at) {
+        return new KaySyntaxException(head, null, at);
+    }
+
+    public String getMessage() {
+        if (message == null) {
+            StringBuilder sb = new StringBuilder(head);
+            if (expected != null)
+                sb.append(expected).append(" But saw: ");
+            message = sb.append(saw.typeName()).append(" = ").append(text).toString();
+        }
+        return message;
+    }
+
+    // Byte offset of the error in the source
+    public int getOffset() {
+        return offset;
+    }
+
+    // The file name, or null if the source was not a file
+    public String getFile() {
+        return lines != null ? lines.name() : file;
+    }
+
+    public int getLine() {
+        return line != 0 ? line : lines.line(offset);
+    }
+
+    public int getColumn() {
+        return column != 0 ? column : lines.column(offset);
+    }
+
+    // Works out the line and column now, for an error that outlives a
+    // source buffer about to be reused
+    void resolve() {
+        line = lines.line(offset);
+        column = lines.column(offset);
+    }
+
+    // "file:line:col", or "line:col" without a file name
+    public String getLocation() {
+        String position = getLine() + ":" + getColumn();
+        String name = getFile();
+        return name == null ? position : name + ":" + position;
+    }
+
+    public String getLocalizedMessage() {
+        return getLocation() + ": " + getMessage();
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        getMessage();
+        if (lines != null) {
+            resolve();
+            file = lines.name();
+        }
+        out.defaultWriteObject();
+    }
+}
@@ -0,0 +1,90 @@
+package com.scanner.project;
+
+// Switch-dispatched virtual machine for Bytecode
+//
+// Sits between Interpreter and KayCompiler: lowering is a single cheap
+// pass and needs no class loading, and the loop below touches only two
+// int arrays. Semantics match Interpreter, including ArithmeticException
+// on division by zero and undeclared variables failing when reached.
+
+public class KayVM {
+
+    private KayVM() {
+    }
+
+    // Runs b from the initial state and returns the final variables
+    public static int[] run(Bytecode b) {
+        int[] slots = new int[b.variables()];
+        run(b, slots);
+        return slots;
+    }
+
+    // Runs b on slots, one int per declared variable, in place
+    public static void run(Bytecode b, int[] slots) {
+        int n = b.variables();
+        int[] r = new int[b.registers];
+        System.arraycopy(slots, 0, r, 0, n);
+        try {
+            execute(b, r);
+        } finally {
+            System.arraycopy(r, 0, slots, 0, n);
+        }
+    }
+
+    private static void execute(Bytecode b, int[] r) {
+        int[] code = b.code;
+        int pc = 0;
+        while (true) {
+            switch (code[pc]) {
+                case Operator.OP_PLUS: r[code[pc + 1]] = r[code[pc + 2]] + r[code[pc + 3]]; pc += 4; break;
+                case Operator.OP_MINUS: r[code[pc + 1]] = r[code[pc + 2]] - r[code[pc + 3]]; pc += 4; break;
+                case Operator.OP_TIMES: r[code[pc + 1]] = r[code[pc + 2]] * r[code[pc + 3]]; pc += 4; break;
+                case Operator.OP_DIV: r[code[pc + 1]] = r[code[pc + 2]] / r[code[pc + 3]]; pc += 4; break;
+                case Operator.OP_AND: r[code[pc + 1]] = r[code[pc + 2]] & r[code[pc + 3]]; pc += 4; break;
+                case Operator.OP_OR: r[code[pc + 1]] = r[code[pc + 2]] | r[code[pc + 3]]; pc += 4; break;
+                case Operator.OP_LT: r[code[pc + 1]] = r[code[pc + 2]] < r[code[pc + 3]] ? 1 : 0; pc += 4; break;
+                case Operator.OP_LE: r[code[pc + 1]] = r[code[pc + 2]] <= r[code[pc + 3]] ? 1 : 0; pc += 4; break;
+                case Operator.OP_GT: r[code[pc + 1]] = r[code[pc + 2]] > r[code[pc + 3]] ? 1 : 0; pc += 4; break;
+                case Operator.OP_GE: r[code[pc + 1]] = r[code[pc + 2]] >= r[code[pc + 3]] ? 1 : 0; pc += 4; break;
+                case Operator.OP_EQ: r[code[pc + 1]] = r[code[pc + 2]] == r[code[pc + 3]] ? 1 : 0; pc += 4; break;
+                case Operator.OP_NE: r[code[pc + 1]] = r[code[pc + 2]] != r[code[pc + 3]] ? 1 : 0; pc += 4; break;
+                case Operator.OP_NOT: r[code[pc + 1]] = r[code[pc + 2]] ^ 1; pc += 3; break;
+                case Bytecode.NEG: r[code[pc + 1]] = -r[code[pc + 2]]; pc += 3; break;
+                case Bytecode.CONST: r[code[pc + 1]] = code[pc + 2]; pc += 3; break;
+                case Bytecode.MOVE: r[code[pc + 1]] = r[code[pc + 2]]; pc += 3; break;
+                case Bytecode.JUMP: pc = code[pc + 1]; break;
+                case Bytecode.JUMPF: pc = r[code[pc + 1]] == 0 ? code[pc + 2] : pc + 3; break;
+                case Bytecode.JCMP:
+                    pc = compare(code[pc + 1], r[code[pc + 2]], r[code[pc + 3]]) ? pc + 5 : code[pc + 4];
+                    break;
+                case Bytecode.FAIL:
+                    throw new RuntimeException("Runtime error - Undeclared variable: " + b.undeclared[code[pc + 1]]);
+                case Bytecode.HALT:
+                    return;
+                default:
+                    throw new IllegalStateException("Bad opcode " + code[pc] + " at " + pc);
+            }
+        }
+    }
+
+    private static boolean compare(int op, int x, int y) {
+        switch (op) {
+            case Operator.OP_LT: return x < y;
+            case Operator.OP_LE: return x <= y;
+            case Operator.OP_GT: return x > y;
+            case Operator.OP_GE: return x >= y;
+            case Operator.OP_EQ: return x == y;
+            default: return x != y;
+        }
+    }
+
+    // Usage: KayVM <program.kay>; prints the final state
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.out.println("Usage: KayVM <program.kay>");
+            return;
+        }
+        Bytecode b = Bytecode.lower(new ConcreteSyntax(new TokenStream(args[0])).program());
+        System.out.print(b.state(run(b)));
+    }
+}
@@ -0,0 +1,139 @@
+package com.scanner.project;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// Turns byte offsets of a UTF-8 source into line and column numbers
+//
+// Line starts are kept in one int[] side table that is filled lazily, up
+// to the furthest offset asked about, so scanning never counts newlines
+// and a file that parses cleanly never builds the table at all. Lines
+// and columns start at 1; columns count characters, not bytes.
+//
+// detach() fills the table at once, along with the offsets of any UTF-8
+// continuation bytes, and drops the source: O(lines) ints for a Program
+// that outlives a buffer about to be reused.
+
+public final class LineMap {
+    // null once detached
+    private final ByteBuffer buffer;
+    private final int limit;
+    private final String name;
+
+    // starts[0 .. lines) are the offsets of the lines found so far; bytes
+    // before scanned have been searched for '\n'
+    private int[] starts = new int[64];
+    private int lines = 1;
+    private int scanned;
+    // Sorted offsets of the continuation bytes, for a detached map
+    private final int[] continuations;
+
+    // Positions in buffer[base, limit); name is the file, or null
+    public LineMap(ByteBuffer buffer, int base, int limit, String name) {
+        this.buffer = buffer;
+        this.limit = limit;
+        this.name = name;
+        continuations = null;
+        starts[0] = base;
+        scanned = base;
+    }
+
+    private LineMap(LineMap m, int[] continuations) {
+        buffer = null;
+        limit = m.limit;
+        name = m.name;
+        starts = Arrays.copyOf(m.starts, m.lines);
+        lines = m.lines;
+        scanned = m.scanned;
+        this.continuations = continuations;
+    }
+
+    // The same positions with the whole table built now and no reference
+    // to the source bytes
+    public LineMap detach() {
+        if (buffer == null)
+            return this;
+        scan(limit);
+        int[] found = new int[0];
+        int n = 0;
+        for (int p = starts[0]; p < limit; p++) {
+            if ((buffer.get(p) & 0xC0) == 0x80) {
+                if (n == found.length)
+                    found = Arrays.copyOf(found, Math.max(16, n * 2));
+                found[n++] = p;
+            }
+        }
+        return new LineMap(this, Arrays.copyOf(found, n));
+    }
+
+    // The file name, or null if the source was not a file
+    public String name() {
+        return name;
+    }
+
+    public int line(int offset) {
+        return lineIndex(offset) + 1;
+    }
+
+    public int column(int offset) {
+        int p = starts[lineIndex(offset)];
+        if (buffer == null)
+            return 1 + offset - p - (below(offset) - below(p));
+        int column = 1;
+        for (; p < offset; p++) {
+            if ((buffer.get(p) & 0xC0) != 0x80)
+                column++;
+        }
+        return column;
+    }
+
+    // Number of continuation bytes before offset, for a detached map
+    private int below(int offset) {
+        int lo = 0;
+        int hi = continuations.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (continuations[mid] < offset)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    // "name:line:col", or "line:col" without a file name
+    public String location(int offset) {
+        String position = line(offset) + ":" + column(offset);
+        return name == null ? position : name + ":" + position;
+    }
+
+    private int lineIndex(int offset) {
+        scan(Math.min(offset, limit));
+        int lo = 0;
+        int hi = lines - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (starts[mid] <= offset)
+                lo = mid;
+            else
+                hi = mid - 1;
+        }
+        return lo;
+    }
+
+    // Records the line starts in buffer[scanned, to)
+    private void scan(int to) {
+        ByteBuffer buf = buffer;
+        if (buf == null)
+            return;
+        for (int p = scanned; p < to; p++) {
+            if (buf.get(p) == '\n') {
+                if (lines == starts.length)
+                    starts = Arrays.copyOf(starts, lines * 2);
+                starts[lines++] = p + 1;
+            }
+        }
+        if (to > scanned)
+            scanned = to;
+    }
+}
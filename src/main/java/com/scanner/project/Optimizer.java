@@ -0,0 +1,291 @@
+package com.scanner.project;
+
+import java.util.ArrayList;
+import java.util.Vector;
+
+// Optional constant folding and algebraic simplification of a Program
+//
+// optimize() rewrites the tree in place and returns how many nodes it
+// removed. The result behaves exactly like the original under
+// Interpreter, KayVM and KayCompiler, including for ill-typed programs:
+//
+//  - Binary nodes over two Values are folded, except division by zero,
+//    which is left to fail at run time
+//  - x + 0, 0 + x, x - 0, x * 1, 1 * x and x / 1 become x
+//  - False || e and e || False become e; True && e and e && True become
+//    e only when e is known to be 0 or 1, since && and || are bitwise
+//  - x * 0, False && e and True || e drop an operand only if evaluating
+//    it cannot fail (no division, no undeclared variable); True || e
+//    also needs e to be 0 or 1
+//  - if with a constant test is replaced by the branch it takes, and
+//    while with a false test is removed
+//
+// A bool variable counts as 0 or 1 only if every assignment to it is.
+
+public class Optimizer {
+    // Variables find their declaration by symbol id, as in the back ends
+    private final SlotLayout layout;
+    private final boolean[] bool;
+
+    private Optimizer(Program p) {
+        layout = new SlotLayout(p.decpart);
+        bool = layout.bool.clone();
+        // Demote bool variables that may be assigned something else, until
+        // nothing changes
+        ArrayList<Assignment> assignments = new ArrayList<>();
+        collect(p.body, assignments);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Assignment a : assignments) {
+                int i = slot(a.target);
+                if (i >= 0 && bool[i] && !isBool(a.source)) {
+                    bool[i] = false;
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    // Simplifies p in place; returns the number of nodes removed
+    public static int optimize(Program p) {
+        int before = nodes(p.body);
+        new Optimizer(p).block(p.body);
+        return before - nodes(p.body);
+    }
+
+    // Number of statement and expression nodes under s, s included
+    static int nodes(Statement s) {
+        if (s instanceof Block) {
+            Block b = (Block) s;
+            int n = 1;
+            for (int i = 0; i < b.blockmembers.size(); i++)
+                n += nodes((Statement) b.blockmembers.elementAt(i));
+            return n;
+        } else if (s instanceof Assignment) {
+            Assignment a = (Assignment) s;
+            return 1 + nodes(a.target) + nodes(a.source);
+        } else if (s instanceof Conditional) {
+            Conditional c = (Conditional) s;
+            return 1 + nodes(c.test) + nodes(c.thenbranch) + (c.elsebranch == null ? 0 : nodes(c.elsebranch));
+        } else if (s instanceof Loop) {
+            Loop l = (Loop) s;
+            return 1 + nodes(l.test) + nodes(l.body);
+        }
+        return 1;
+    }
+
+    static int nodes(Expression e) {
+        if (e instanceof Binary)
+            return 1 + nodes(((Binary) e).term1) + nodes(((Binary) e).term2);
+        if (e instanceof Unary)
+            return 1 + nodes(((Unary) e).term);
+        return 1;
+    }
+
+    private static void collect(Statement s, ArrayList<Assignment> out) {
+        if (s instanceof Assignment) {
+            out.add((Assignment) s);
+        } else if (s instanceof Block) {
+            Block b = (Block) s;
+            for (int i = 0; i < b.blockmembers.size(); i++)
+                collect((Statement) b.blockmembers.elementAt(i), out);
+        } else if (s instanceof Conditional) {
+            Conditional c = (Conditional) s;
+            collect(c.thenbranch, out);
+            if (c.elsebranch != null)
+                collect(c.elsebranch, out);
+        } else if (s instanceof Loop) {
+            collect(((Loop) s).body, out);
+        }
+    }
+
+    private int slot(Variable v) {
+        return layout.slot(v);
+    }
+
+    // Simplifies the members of b, dropping removed statements and
+    // splicing in the blocks of eliminated conditionals
+    private void block(Block b) {
+        Vector members = new Vector(b.blockmembers.size());
+        for (int i = 0; i < b.blockmembers.size(); i++) {
+            Statement s = statement((Statement) b.blockmembers.elementAt(i));
+            if (s instanceof Block)
+                members.addAll(((Block) s).blockmembers);
+            else if (s != null)
+                members.add(s);
+        }
+        b.blockmembers = members;
+    }
+
+    // The simplified statement, a Block to splice, or null if s is removed
+    private Statement statement(Statement s) {
+        if (s instanceof Assignment) {
+            Assignment a = (Assignment) s;
+            a.source = expression(a.source);
+            return a;
+        } else if (s instanceof Block) {
+            block((Block) s);
+            return s;
+        } else if (s instanceof Conditional) {
+            Conditional c = (Conditional) s;
+            c.test = expression(c.test);
+            if (c.test instanceof Value) {
+                Statement taken = isTrue((Value) c.test) ? c.thenbranch : c.elsebranch;
+                return taken == null ? null : statement(taken);
+            }
+            statement(c.thenbranch);
+            if (c.elsebranch != null)
+                statement(c.elsebranch);
+            return c;
+        } else if (s instanceof Loop) {
+            Loop l = (Loop) s;
+            l.test = expression(l.test);
+            if (l.test instanceof Value && !isTrue((Value) l.test))
+                return null;
+            statement(l.body);
+            return l;
+        }
+        return null;    // Skip
+    }
+
+    private Expression expression(Expression e) {
+        if (e instanceof Binary) {
+            Binary b = (Binary) e;
+            b.term1 = expression(b.term1);
+            b.term2 = expression(b.term2);
+            return simplify(b);
+        } else if (e instanceof Unary) {
+            Unary u = (Unary) e;
+            u.term = expression(u.term);
+            if (u.term instanceof Value) {
+                Value v = (Value) u.term;
+                if (u.op.code == Operator.OP_NOT && v.type.isBoolean())
+                    return new Value(!v.boolValue);
+                if (u.op.code == Operator.OP_MINUS && v.type.isInteger())
+                    return new Value(-v.intValue);
+            }
+        }
+        return e;
+    }
+
+    private Expression simplify(Binary b) {
+        Expression x = b.term1;
+        Expression y = b.term2;
+        if (x instanceof Value && y instanceof Value) {
+            Expression folded = fold(b.op.code, (Value) x, (Value) y);
+            if (folded != null)
+                return folded;
+        }
+        switch (b.op.code) {
+            case Operator.OP_PLUS:
+                if (isInt(y, 0)) return x;
+                if (isInt(x, 0)) return y;
+                break;
+            case Operator.OP_MINUS:
+                if (isInt(y, 0)) return x;
+                break;
+            case Operator.OP_TIMES:
+                if (isInt(y, 1)) return x;
+                if (isInt(x, 1)) return y;
+                if (isInt(y, 0) && isSafe(x)) return y;
+                if (isInt(x, 0) && isSafe(y)) return x;
+                break;
+            case Operator.OP_DIV:
+                if (isInt(y, 1)) return x;
+                break;
+            case Operator.OP_AND:
+                if (isBool(y, true) && isBool(x)) return x;
+                if (isBool(x, true) && isBool(y)) return y;
+                if (isBool(y, false) && isSafe(x)) return y;
+                if (isBool(x, false) && isSafe(y)) return x;
+                break;
+            case Operator.OP_OR:
+                if (isBool(y, false)) return x;
+                if (isBool(x, false)) return y;
+                if (isBool(y, true) && isBool(x) && isSafe(x)) return y;
+                if (isBool(x, true) && isBool(y) && isSafe(y)) return x;
+                break;
+        }
+        return b;
+    }
+
+    // x op y on two Values, or null if it must be left to run time
+    private static Expression fold(int op, Value x, Value y) {
+        if (x.type.isUndefined() || y.type.isUndefined())
+            return null;
+        int a = intOf(x);
+        int b = intOf(y);
+        switch (op) {
+            case Operator.OP_PLUS: return new Value(a + b);
+            case Operator.OP_MINUS: return new Value(a - b);
+            case Operator.OP_TIMES: return new Value(a * b);
+            case Operator.OP_DIV: return b == 0 ? null : new Value(a / b);
+            case Operator.OP_LT: return new Value(a < b);
+            case Operator.OP_LE: return new Value(a <= b);
+            case Operator.OP_GT: return new Value(a > b);
+            case Operator.OP_GE: return new Value(a >= b);
+            case Operator.OP_EQ: return new Value(a == b);
+            case Operator.OP_NE: return new Value(a != b);
+            case Operator.OP_AND:
+                return x.type.isBoolean() && y.type.isBoolean() ? new Value(x.boolValue && y.boolValue) : null;
+            case Operator.OP_OR:
+                return x.type.isBoolean() && y.type.isBoolean() ? new Value(x.boolValue || y.boolValue) : null;
+            default: return null;
+        }
+    }
+
+    private static int intOf(Value v) {
+        return v.type.isBoolean() ? (v.boolValue ? 1 : 0) : v.intValue;
+    }
+
+    private static boolean isTrue(Value v) {
+        return intOf(v) != 0;
+    }
+
+    private static boolean isInt(Expression e, int value) {
+        return e instanceof Value && ((Value) e).type.isInteger() && ((Value) e).intValue == value;
+    }
+
+    private static boolean isBool(Expression e, boolean value) {
+        return e instanceof Value && ((Value) e).type.isBoolean() && ((Value) e).boolValue == value;
+    }
+
+    // True if e always evaluates to 0 or 1
+    private boolean isBool(Expression e) {
+        if (e instanceof Value)
+            return ((Value) e).type.isBoolean();
+        if (e instanceof Variable) {
+            int i = slot((Variable) e);
+            return i >= 0 && bool[i];
+        }
+        if (e instanceof Binary) {
+            Binary b = (Binary) e;
+            int op = b.op.code;
+            if (op >= Operator.OP_LT && op <= Operator.OP_GE)
+                return true;
+            return (op == Operator.OP_AND || op == Operator.OP_OR) && isBool(b.term1) && isBool(b.term2);
+        }
+        if (e instanceof Unary)
+            return ((Unary) e).op.code == Operator.OP_NOT && isBool(((Unary) e).term);
+        return false;
+    }
+
+    // True if evaluating e cannot throw
+    private boolean isSafe(Expression e) {
+        if (e instanceof Value)
+            return true;
+        if (e instanceof Variable)
+            return slot((Variable) e) >= 0;
+        if (e instanceof Binary) {
+            Binary b = (Binary) e;
+            return b.op.code != Operator.OP_DIV && b.op.code != Operator.OP_UNKNOWN
+                    && b.op.code != Operator.OP_NOT && isSafe(b.term1) && isSafe(b.term2);
+        }
+        if (e instanceof Unary) {
+            int op = ((Unary) e).op.code;
+            return (op == Operator.OP_NOT || op == Operator.OP_MINUS) && isSafe(((Unary) e).term);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,228 @@
+package com.scanner.project;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// Parses one large program on several cores by splitting the body of
+// main at top-level statements
+//
+// "main {" and the declarations are parsed as usual. A byte-level pass
+// then finds the top-level statement ends (';' at brace depth zero, and
+// '}' back at depth zero unless an else follows), skipping // comments;
+// KAY has no string literals, so braces and ';' bytes are always tokens.
+// Chunks of roughly equal size between those points are parsed in
+// parallel, each by its own TokenStream over a slice of the buffer, so
+// spans stay absolute. The chunks' identifiers are then interned into the
+// header's SymbolTable in chunk order, which hands out exactly the ids a
+// sequential parse would, and each chunk's Variables are pointed at them.
+//
+// The Program is identical to ConcreteSyntax.program(): same tree, spans,
+// symbols and LineMap. If any chunk fails, the whole source is parsed
+// again sequentially so the error is the one program() throws.
+
+public final class ParallelParser {
+    // Bodies smaller than this are not worth splitting
+    private static final int MIN_CHUNK = 64 << 10;
+    // Chunks per thread, so an uneven chunk does not idle the others
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private ParallelParser() {
+    }
+
+    public static Program parse(KaySource source) {
+        return parse(source, Runtime.getRuntime().availableProcessors());
+    }
+
+    // Parses source fail-fast on up to parallelism threads
+    public static Program parse(KaySource source, int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        ByteBuffer buffer = source.bytes();
+        TokenStream head = new TokenStream(buffer, source.name());
+        ConcreteSyntax parser = new ConcreteSyntax(head);
+        Declarations decpart = new Declarations();
+        int open = parser.header(decpart);
+
+        int from = head.kind() == TokenKind.EOF ? head.end() : head.start();
+        int[] splits = split(buffer, from, buffer.limit(), parallelism * CHUNKS_PER_THREAD);
+        if (parallelism == 1 || splits == null || splits.length < 3)
+            return new ConcreteSyntax(source).program();
+
+        Block[] chunks = new Block[splits.length - 1];
+        SymbolTable[] tables = new SymbolTable[chunks.length];
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<Future<?>> tasks = new ArrayList<>(chunks.length);
+            for (int i = 0; i < chunks.length; i++) {
+                int k = i;
+                tasks.add(pool.submit(() -> {
+                    TokenStream ts = new TokenStream(slice(buffer, splits[k], splits[k + 1]), source.name());
+                    chunks[k] = new ConcreteSyntax(ts).chunk();
+                    tables[k] = ts.symbols();
+                }));
+            }
+            if (!join(tasks) || !endsCleanly(buffer, splits[splits.length - 1], source.name()))
+                return new ConcreteSyntax(source).program();
+
+            // Intern in chunk order, then remap each chunk in parallel
+            SymbolTable table = head.symbols();
+            Symbol[][] maps = new Symbol[chunks.length][];
+            for (int k = 0; k < chunks.length; k++) {
+                maps[k] = new Symbol[tables[k].spellings()];
+                for (int j = 0; j < maps[k].length; j++)
+                    maps[k][j] = table.intern(tables[k].spelling(j).name);
+            }
+            tasks.clear();
+            for (int i = 0; i < chunks.length; i++) {
+                int k = i;
+                tasks.add(pool.submit(() -> remap(chunks[k], maps[k])));
+            }
+            join(tasks);
+        } finally {
+            pool.shutdown();
+        }
+
+        Block body = new Block();
+        for (Block chunk : chunks)
+            body.blockmembers.addAll(chunk.blockmembers);
+        body.span = Span.of(open, splits[splits.length - 1] + 1);
+        Program p = new Program(decpart, body);
+        p.lines = head.lines();
+        return p;
+    }
+
+    // Offsets that cut buffer[from, limit) into about n chunks at
+    // top-level statement ends: from first, then the cuts, then the
+    // offset of the '}' closing main. Null if there is no such '}'.
+    static int[] split(ByteBuffer buffer, int from, int limit, int n) {
+        int target = Math.max(MIN_CHUNK, (limit - from) / Math.max(1, n));
+        int[] cuts = new int[16];
+        int count = 0;
+        cuts[count++] = from;
+        int depth = 0;
+        for (int p = from; p < limit; p++) {
+            byte b = buffer.get(p);
+            if (b == '/' && p + 1 < limit && buffer.get(p + 1) == '/') {
+                while (p < limit && buffer.get(p) != '\n')
+                    p++;
+                continue;
+            }
+            boolean end = false;
+            if (b == '{') {
+                depth++;
+            } else if (b == '}') {
+                if (depth == 0) {
+                    if (count == cuts.length)
+                        cuts = Arrays.copyOf(cuts, count * 2);
+                    cuts[count++] = p;
+                    return Arrays.copyOf(cuts, count);
+                }
+                end = --depth == 0 && !elseFollows(buffer, p + 1, limit);
+            } else if (b == ';') {
+                end = depth == 0;
+            }
+            if (end && p + 1 - cuts[count - 1] >= target) {
+                if (count == cuts.length)
+                    cuts = Arrays.copyOf(cuts, count * 2);
+                cuts[count++] = p + 1;
+            }
+        }
+        return null;
+    }
+
+    // True if the next word after p, past spaces and comments, starts with
+    // "else"; an identifier such as elsewhere just costs a split point
+    private static boolean elseFollows(ByteBuffer buffer, int p, int limit) {
+        while (p < limit) {
+            byte b = buffer.get(p);
+            if (b == '/' && p + 1 < limit && buffer.get(p + 1) == '/') {
+                while (p < limit && buffer.get(p) != '\n')
+                    p++;
+            } else if (b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f' || b == 0x0B) {
+                p++;
+            } else {
+                break;
+            }
+        }
+        return p + 4 <= limit && buffer.get(p) == 'e' && buffer.get(p + 1) == 'l'
+                && buffer.get(p + 2) == 's' && buffer.get(p + 3) == 'e';
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int from, int to) {
+        ByteBuffer b = buffer.duplicate();
+        b.limit(to).position(from);
+        return b;
+    }
+
+    // Waits for every task; false if any failed with a syntax error
+    private static boolean join(List<Future<?>> tasks) {
+        boolean ok = true;
+        for (Future<?> f : tasks) {
+            try {
+                f.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Error)
+                    throw (Error) cause;
+                if (!(cause instanceof KaySyntaxException))
+                    throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+                ok = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while parsing", e);
+            }
+        }
+        return ok;
+    }
+
+    // program() scans one token past the closing '}'; true if that scan
+    // would succeed
+    private static boolean endsCleanly(ByteBuffer buffer, int close, String name) {
+        try {
+            new TokenStream(slice(buffer, close + 1, buffer.limit()), name).advance();
+            return true;
+        } catch (KaySyntaxException e) {
+            return false;
+        }
+    }
+
+    private static void remap(Statement s, Symbol[] map) {
+        if (s instanceof Assignment) {
+            Assignment a = (Assignment) s;
+            remap(a.target, map);
+            remap(a.source, map);
+        } else if (s instanceof Block) {
+            Block b = (Block) s;
+            for (int i = 0, n = b.blockmembers.size(); i < n; i++)
+                remap((Statement) b.blockmembers.elementAt(i), map);
+        } else if (s instanceof Conditional) {
+            Conditional c = (Conditional) s;
+            remap(c.test, map);
+            remap(c.thenbranch, map);
+            if (c.elsebranch != null)
+                remap(c.elsebranch, map);
+        } else if (s instanceof Loop) {
+            Loop l = (Loop) s;
+            remap(l.test, map);
+            remap(l.body, map);
+        }
+    }
+
+    private static void remap(Expression e, Symbol[] map) {
+        if (e instanceof Variable) {
+            Variable v = (Variable) e;
+            v.symbol = map[v.symbol.serial];
+            v.id = v.symbol.name;
+        } else if (e instanceof Binary) {
+            remap(((Binary) e).term1, map);
+            remap(((Binary) e).term2, map);
+        } else if (e instanceof Unary) {
+            remap(((Unary) e).term, map);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.scanner.project;
+
+// Outcome of ConcreteSyntax.tryParse: the Program, or the first syntax
+// error as a Diagnostic
+
+public final class ParseResult {
+    private final Program program;
+    private final Diagnostic diagnostic;
+
+    ParseResult(Program program, Diagnostic diagnostic) {
+        this.program = program;
+        this.diagnostic = diagnostic;
+    }
+
+    public boolean ok() {
+        return program != null;
+    }
+
+    // The parsed program, or null if there was an error
+    public Program program() {
+        return program;
+    }
+
+    // The error, or null if the parse succeeded
+    public Diagnostic diagnostic() {
+        return diagnostic;
+    }
+
+    public String toString() {
+        return ok() ? "ok" : diagnostic.toString();
+    }
+}
@@ -0,0 +1,114 @@
+package com.scanner.project;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Thread-safe pool of reusable parsers, for services that parse many
+// small sources
+//
+// A Lease is a fail-fast ConcreteSyntax with its TokenStream and a
+// SourceBuffer for text and streams. Each parse resets it onto the new
+// source, so once warm a request allocates only the tree it builds, its
+// identifiers and its line starts. Every acquire() starts the parser on
+// a new symbol table, which belongs to the holder of the lease and its
+// results: a later lease of the same parser never writes to it. Text and
+// streams are held in the lease's buffer, which the next parse
+// overwrites, so their results are detached from it: an error has its
+// line and column worked out at once, and a Program gets a LineMap of
+// its line starts that no longer reads the source. Results of
+// parse(KaySource) read the caller's source, as ConcreteSyntax's do.
+//
+//     try (ParserPool.Lease parser = pool.acquire()) {
+//         ParseResult r = parser.parse(request);
+//         ...
+//     }
+//
+// At most maxIdle parsers are kept between uses; a busy pool makes fresh
+// ones rather than blocking. Each acquire() returns a new Lease over a
+// pooled parser, so closing a stale Lease again can never return a
+// parser that someone else holds.
+
+public final class ParserPool {
+    private final ArrayBlockingQueue<Parser> idle;
+
+    public ParserPool() {
+        this(Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    public ParserPool(int maxIdle) {
+        idle = new ArrayBlockingQueue<>(Math.max(1, maxIdle));
+    }
+
+    // An idle parser, or a new one if none is free
+    public Lease acquire() {
+        Parser parser = idle.poll();
+        if (parser == null)
+            parser = new Parser();
+        else
+            ((TokenStream) parser.syntax.input()).newSymbols();
+        return new Lease(this, parser);
+    }
+
+    // Number of parsers waiting to be reused
+    public int idle() {
+        return idle.size();
+    }
+
+    // The state a lease reuses
+    private static final class Parser {
+        final SourceBuffer buffer = new SourceBuffer();
+        final ConcreteSyntax syntax = new ConcreteSyntax(KaySource.of(new byte[0]));
+    }
+
+    public static final class Lease implements AutoCloseable {
+        private final ParserPool pool;
+        private final Parser state;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Lease(ParserPool pool, Parser state) {
+            this.pool = pool;
+            this.state = state;
+        }
+
+        public ParseResult parse(KaySource source) {
+            check();
+            return state.syntax.parse(source);
+        }
+
+        // Encodes text into this lease's buffer and parses it
+        public ParseResult parse(CharSequence text) {
+            check();
+            return detach(state.syntax.parse(state.buffer.encode(text)));
+        }
+
+        // Reads in to its end into this lease's buffer and parses it
+        public ParseResult parse(InputStream in) throws IOException {
+            check();
+            return detach(state.syntax.parse(state.buffer.read(in)));
+        }
+
+        // Stops r reading this lease's buffer
+        private static ParseResult detach(ParseResult r) {
+            Program p = r.program();
+            if (p != null && p.lines != null)
+                p.lines = p.lines.detach();
+            else if (p == null)
+                r.diagnostic().exception().resolve();
+            return r;
+        }
+
+        // Returns the parser to its pool; the lease must not be used again.
+        // Only the first close does anything.
+        public void close() {
+            if (closed.compareAndSet(false, true))
+                pool.idle.offer(state);
+        }
+
+        private void check() {
+            if (closed.get())
+                throw new IllegalStateException("Parser used after close");
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.scanner.project;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// A TokenCursor fed by a scanner on its own thread, so scanning and tree
+// building run on two cores
+//
+// The scanner writes packed tokens into a bounded single-producer,
+// single-consumer ring: two longs per token, start and end offsets in
+// one, int value, terminal and kind in the other. Each side publishes
+// its count once per batch of tokens, and before it waits, so there are
+// no locks and few shared writes on the hot path. A full ring makes the
+// scanner wait and an empty one makes the parser wait, each spinning
+// briefly and then parking until the other side wakes it.
+//
+// A scan error ends the stream: the parser receives every token before
+// it and then, when it advances onto the bad token, the scanner's
+// KaySyntaxException, thrown on the parser thread exactly as TokenStream
+// would throw it. Identifiers are interned, and text decoded, on the
+// parser thread. close() stops the scanner early, for a parse that ends
+// in an error; use try-with-resources.
+
+public final class PipelinedTokens implements TokenCursor, AutoCloseable {
+    private static final int BATCH = 64;
+    private static final int SPINS = 200;
+    private static final TokenKind[] KINDS = TokenKind.values();
+    private static final Terminal[] TERMINALS = Terminal.values();
+
+    private final ByteBuffer buffer;
+    private final String name;
+    private final TokenStream scanner;
+    private final long[] ring;
+    private final int mask;
+
+    // Tokens written by the scanner and read by the parser
+    private final AtomicLong produced = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+    private volatile boolean finished;
+    private volatile boolean closed;
+    private volatile RuntimeException failure;
+    private volatile boolean scannerParked;
+    private volatile Thread parserParked;
+    private final Thread thread;
+
+    // Parser side
+    private long next;
+    private long available;
+    private TokenKind kind;
+    private Terminal terminal;
+    private int start;
+    private int end;
+    private int intValue;
+    private final SymbolTable symbols = new SymbolTable();
+    private LineMap lines;
+
+    public PipelinedTokens(KaySource source) {
+        this(source, 4096);
+    }
+
+    // capacity is the ring size in tokens, rounded up to a power of two
+    public PipelinedTokens(KaySource source, int capacity) {
+        int size = Integer.highestOneBit(Math.max(2 * BATCH, capacity) - 1) << 1;
+        ring = new long[2 * size];
+        mask = size - 1;
+        buffer = source.bytes();
+        name = source.name();
+        scanner = new TokenStream(buffer.duplicate(), name);
+        thread = new Thread(this::scan, "kay-scanner");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Scanner thread
+    private void scan() {
+        long[] ring = this.ring;
+        long count = 0;
+        long free = ring.length / 2;
+        try {
+            while (!closed) {
+                TokenKind k = scanner.advance();
+                if (count == free) {
+                    publish(count);
+                    free = awaitSpace(count);
+                    if (closed)
+                        break;
+                }
+                Terminal t = scanner.terminal();
+                int i = (int) (count & mask) << 1;
+                ring[i] = (long) scanner.start() << 32 | (scanner.end() & 0xFFFFFFFFL);
+                ring[i + 1] = (long) scanner.intValue() << 32 | (t == null ? 0 : t.ordinal() + 1) << 8 | k.ordinal();
+                count++;
+                if (k == TokenKind.EOF)
+                    break;
+                if ((count & (BATCH - 1)) == 0)
+                    publish(count);
+            }
+        } catch (RuntimeException e) {
+            failure = e;
+        } catch (Error e) {
+            failure = new IllegalStateException("Scanner failed", e);
+        } finally {
+            // The count first: a parser that sees finished sees all tokens
+            produced.set(count);
+            finished = true;
+            Thread t = parserParked;
+            if (t != null)
+                LockSupport.unpark(t);
+        }
+    }
+
+    private void publish(long count) {
+        produced.set(count);
+        Thread t = parserParked;
+        if (t != null)
+            LockSupport.unpark(t);
+    }
+
+    // Waits until the parser has taken a token; returns the new limit
+    private long awaitSpace(long count) {
+        int capacity = ring.length / 2;
+        for (int spin = 0; ; spin++) {
+            long limit = consumed.get() + capacity;
+            if (limit > count || closed)
+                return limit;
+            if (spin < SPINS) {
+                Thread.onSpinWait();
+            } else {
+                scannerParked = true;
+                if (consumed.get() + capacity == count && !closed)
+                    LockSupport.park(this);
+                scannerParked = false;
+            }
+        }
+    }
+
+    // Waits until the scanner has published a token past next, or has
+    // finished; returns the count published
+    private long awaitTokens() {
+        release();
+        for (int spin = 0; ; spin++) {
+            boolean done = finished;
+            long count = produced.get();
+            if (count > next || done)
+                return count;
+            if (spin < SPINS) {
+                Thread.onSpinWait();
+            } else {
+                parserParked = Thread.currentThread();
+                if (produced.get() == next && !finished)
+                    LockSupport.park(this);
+                parserParked = null;
+            }
+        }
+    }
+
+    // Hands the slots read so far back to the scanner
+    private void release() {
+        consumed.set(next);
+        if (scannerParked)
+            LockSupport.unpark(thread);
+    }
+
+    public TokenKind advance() {
+        if (kind == TokenKind.EOF)
+            return kind;
+        if (next == available) {
+            available = awaitTokens();
+            if (next == available) {
+                RuntimeException e = failure;
+                throw e != null ? e : new IllegalStateException("Scanner stopped");
+            }
+        }
+        int i = (int) (next & mask) << 1;
+        long position = ring[i];
+        long packed = ring[i + 1];
+        if ((++next & (BATCH - 1)) == 0)
+            release();
+        start = (int) (position >>> 32);
+        end = (int) position;
+        intValue = (int) (packed >>> 32);
+        int t = (int) (packed >>> 8) & 0xFF;
+        terminal = t == 0 ? null : TERMINALS[t - 1];
+        kind = KINDS[(int) packed & 0xFF];
+        return kind;
+    }
+
+    public TokenKind kind() {
+        return kind;
+    }
+
+    public Terminal terminal() {
+        return terminal;
+    }
+
+    public int start() {
+        return start;
+    }
+
+    public int end() {
+        return end;
+    }
+
+    public int intValue() {
+        return intValue;
+    }
+
+    public Symbol symbol() {
+        return symbols.intern(buffer, start, end);
+    }
+
+    public SymbolTable symbols() {
+        return symbols;
+    }
+
+    public String text() {
+        if (terminal != null)
+            return terminal.text;
+        if (kind == TokenKind.EOF)
+            return "";
+        return scanner.text(start, end);
+    }
+
+    public LineMap lines() {
+        if (lines == null)
+            lines = new LineMap(buffer, buffer.position(), buffer.limit(), name);
+        return lines;
+    }
+
+    // Stops the scanner if it is still running and waits for it to exit
+    public void close() {
+        closed = true;
+        LockSupport.unpark(thread);
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+}
@@ -8,6 +8,9 @@ package com.scanner.project;
 // Display methods are added to facilitate debugging and experimentation
 
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
 import java.util.Vector;
 
 public class Program {
@@ -15,15 +18,37 @@ public class Program {
 
 	public Declarations decpart;
 	public Block body;
+	public LineMap lines; // resolves node spans, null if built by hand
+
+	public Program(Declarations decpart, Block body) {
+		this.decpart = decpart;
+		this.body = body;
+	}
+
+	// "file:line:col" of the start of span, or null if it is unknown
+	public String location(long span) {
+		if (lines == null || span == Span.NONE)
+			return null;
+		return lines.location(Span.start(span));
+	}
 
 	public String display() {
+		StringBuilder sb = new StringBuilder();
+		try {
+			display(sb);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return sb.toString();
+	}
+
+	// Appends the same text display() returns, in time linear in its length
+	public void display(Appendable out) throws IOException {
 		int level = 0;
-		Indenter indent = new Indenter(level);
-		String s = indent.display("Abstract syntax of the KAY Program: ");
-		String dec = decpart.display(level + 1);
-		String bod = body.display(level + 1);
-		String nl = "\n";
-		return s + dec + bod + nl;
+		Indenter.display(out, level, "Abstract syntax of the KAY Program: ");
+		decpart.display(out, level + 1);
+		body.display(out, level + 1);
+		out.append('\n');
 	}
 }
 
@@ -38,11 +63,31 @@ class Indenter {
 
 	public String display(String message) {
 		// Displays a message on the next line at the current level
-		String tab = "";
-		String nl = "\n";
-		for (int i = 0; i < level; i++)
-			tab = tab + "  ";
-		return nl + tab + message;
+		return prefix(level) + message;
+	}
+
+	// "\n" plus two spaces per level, cached for every level seen so far
+	private static volatile String[] prefixes = { "\n" };
+
+	static String prefix(int level) {
+		String[] p = prefixes;
+		if (level >= p.length) {
+			String[] q = Arrays.copyOf(p, Math.max(level + 1, p.length * 2));
+			for (int i = p.length; i < q.length; i++)
+				q[i] = q[i - 1] + "  ";
+			prefixes = p = q;
+		}
+		return p[level];
+	}
+
+	// Appends message on the next line at level
+	static void display(Appendable out, int level, String message) throws IOException {
+		out.append(prefix(level)).append(message);
+	}
+
+	// Appends the line that starts the display of node
+	static void header(Appendable out, int level, Object node) throws IOException {
+		out.append(prefix(level)).append(node.getClass().getName()).append(": ");
 	}
 }
 class Declarations extends Vector {
@@ -50,16 +95,24 @@ class Declarations extends Vector {
 	//				  (a Vector of Declarations d1, d2, ..., dn)
 
 	public String display(int level) {
-		Indenter indent = new Indenter(level);
-		String s = indent.display(getClass().toString().substring(6) + ": ");
-		String s1 = indent.display("  Declarations = {");
-		String s2 = "";
+		StringBuilder sb = new StringBuilder();
+		try {
+			display(sb, level);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return sb.toString();
+	}
+
+	public void display(Appendable out, int level) throws IOException {
+		Indenter.header(out, level, this);
+		Indenter.display(out, level, "  Declarations = {");
 		for (int i = 0; i < size(); i++) {
-			s2 = s2 + ((Declaration) elementAt(i)).display();
+			((Declaration) elementAt(i)).display(out);
 			if (i < size() - 1)
-				s2 = s2 + ", ";
+				out.append(", ");
 		}
-		return s + s1 + s2 + "}";
+		out.append('}');
 	}
 }
 
@@ -72,6 +125,10 @@ class Declaration {
 	public String display() {
 		return "<" + v.id + ", " + t.id + ">";
 	}
+
+	public void display(Appendable out) throws IOException {
+		out.append('<').append(v.id).append(", ").append(t.id).append('>');
+	}
 }
 
 class Type {
@@ -103,17 +160,24 @@ class Type {
 class Statement {
 	// Statement = Skip | Block | Assignment | Conditional | Loop
 
+	public long span = Span.NONE; // source offsets, packed by Span
+
 	public String display(int level) {
-		Indenter indent = new Indenter(level);
-		return indent.display(getClass().toString().substring(6) + ": ");
+		StringBuilder sb = new StringBuilder();
+		try {
+			display(sb, level);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return sb.toString();
+	}
+
+	public void display(Appendable out, int level) throws IOException {
+		Indenter.header(out, level, this);
 	}
 }
 
 class Skip extends Statement {
-
-	public String display(int level) {
-		return super.display(level);
-	}
 }
 
 class Block extends Statement {
@@ -122,11 +186,10 @@ class Block extends Statement {
 
 	public Vector blockmembers = new Vector();
 
-	public String display(int level) {
-		String s = super.display(level);
+	public void display(Appendable out, int level) throws IOException {
+		super.display(out, level);
 		for (int i = 0; i < blockmembers.size(); i++)
-			s = s + ((Statement) blockmembers.elementAt(i)).display(level + 1);
-		return s;
+			((Statement) blockmembers.elementAt(i)).display(out, level + 1);
 	}
 }
 
@@ -136,11 +199,10 @@ class Assignment extends Statement {
 	public Variable target;
 	public Expression source;
 
-	public String display(int level) {
-		String s = super.display(level);
-		String tar = target.display(level + 1);
-		String sour = source.display(level + 1);
-		return s + tar + sour;
+	public void display(Appendable out, int level) throws IOException {
+		super.display(out, level);
+		target.display(out, level + 1);
+		source.display(out, level + 1);
 	}
 	
 	
@@ -153,14 +215,12 @@ class Conditional extends Statement {
 	public Statement thenbranch, elsebranch;
 	// elsebranch == null means "if... then" Statement
 
-	public String display(int level) {
-		String s = super.display(level);
-		String cond = test.display(level + 1);
-		String then = thenbranch.display(level + 1);
-		String els = "";
+	public void display(Appendable out, int level) throws IOException {
+		super.display(out, level);
+		test.display(out, level + 1);
+		thenbranch.display(out, level + 1);
 		if (elsebranch != null)
-			els = els + elsebranch.display(level + 1);
-		return s + cond + then + els;
+			elsebranch.display(out, level + 1);
 	}
 }
 
@@ -170,20 +230,30 @@ class Loop extends Statement {
 	public Expression test;
 	public Statement body;
 
-	public String display(int level) {
-		String s = super.display(level);
-		String t = test.display(level + 1);
-		String b = body.display(level + 1);
-		return s + t + b;
+	public void display(Appendable out, int level) throws IOException {
+		super.display(out, level);
+		test.display(out, level + 1);
+		body.display(out, level + 1);
 	}
 }
 
 class Expression {
 	// Expression = Variable | Value | Binary | Unary
 
+	public long span = Span.NONE; // source offsets, packed by Span
+
 	public String display(int level) {
-		Indenter indent = new Indenter(level);
-		return indent.display(getClass().toString().substring(6) + ": ");
+		StringBuilder sb = new StringBuilder();
+		try {
+			display(sb, level);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return sb.toString();
+	}
+
+	public void display(Appendable out, int level) throws IOException {
+		Indenter.header(out, level, this);
 	}
 }
 
@@ -191,19 +261,22 @@ class Variable extends Expression {
 	// Variable = String id
 
 	public String id;
+	public Symbol symbol; // interned id, null if not built by the parser
 
 	public boolean equals(Object obj) {
-		String s = ((Variable) obj).id;
-		return id.equalsIgnoreCase(s); // case-insensitive identifiers
+		Variable v = (Variable) obj;
+		if (symbol != null && v.symbol != null && symbol.table == v.symbol.table)
+			return symbol.id == v.symbol.id;
+		return id.equalsIgnoreCase(v.id); // case-insensitive identifiers
 	}
 
 	public int hashCode() {
-		return id.hashCode();
+		return symbol != null ? symbol.hash : SymbolTable.foldedHash(id);
 	}
 
-	public String display(int level) {
-		String s = super.display(level);
-		return s + id;
+	public void display(Appendable out, int level) throws IOException {
+		super.display(out, level);
+		out.append(id);
 	}
 }
 
@@ -230,13 +303,12 @@ class Value extends Expression {
 		type = new Type(Type.UNDEFINED);
 	}
 
-	public String display(int level) {
-		String s = super.display(level);
+	public void display(Appendable out, int level) throws IOException {
+		super.display(out, level);
 		if (type.isInteger())
-			s = s + intValue;
+			out.append(Integer.toString(intValue));
 		else if (type.isBoolean())
-			s = s + boolValue;
-		return s;
+			out.append(boolValue ? "true" : "false");
 	}
 }
 
@@ -246,12 +318,11 @@ class Binary extends Expression {
 	public Operator op;
 	public Expression term1, term2;
 
-	public String display(int level) {
-		String s = super.display(level);
-		String sop = op.display(level + 1);
-		String t1 = term1.display(level + 1);
-		String t2 = term2.display(level + 1);
-		return s + sop + t1 + t2;
+	public void display(Appendable out, int level) throws IOException {
+		super.display(out, level);
+		op.display(out, level + 1);
+		term1.display(out, level + 1);
+		term2.display(out, level + 1);
 	}
 }
 
@@ -261,11 +332,10 @@ class Unary extends Expression {
 	public Operator op;
 	public Expression term;
 
-	public String display(int level) {
-		String s = super.display(level);
-		String sop = op.display(level + 1);
-		String t = term.display(level + 1);
-		return s + sop + t;
+	public void display(Appendable out, int level) throws IOException {
+		super.display(out, level);
+		op.display(out, level + 1);
+		term.display(out, level + 1);
 	}
 }
 
@@ -292,8 +362,47 @@ class Operator {
 	// UnaryOp = !    
 	final static String NOT = "!";
 
+	// Dense codes of the operators above, so that evaluators can switch on
+	// an int instead of comparing val. "!=" is the scanner's spelling of NE.
+	final static int OP_UNKNOWN = 0;
+	final static int OP_AND = 1;
+	final static int OP_OR = 2;
+	final static int OP_LT = 3;
+	final static int OP_LE = 4;
+	final static int OP_EQ = 5;
+	final static int OP_NE = 6;
+	final static int OP_GT = 7;
+	final static int OP_GE = 8;
+	final static int OP_PLUS = 9;
+	final static int OP_MINUS = 10;
+	final static int OP_TIMES = 11;
+	final static int OP_DIV = 12;
+	final static int OP_NOT = 13;
+
+	public int code; // one of the OP_ codes, derived from val
+
 	public Operator(String s) {
 		val = s;
+		code = codeOf(s);
+	}
+
+	static int codeOf(String s) {
+		switch (s) {
+			case AND: return OP_AND;
+			case OR: return OP_OR;
+			case LT: return OP_LT;
+			case LE: return OP_LE;
+			case EQ: return OP_EQ;
+			case NE: case "!=": return OP_NE;
+			case GT: return OP_GT;
+			case GE: return OP_GE;
+			case PLUS: return OP_PLUS;
+			case MINUS: return OP_MINUS;
+			case TIMES: return OP_TIMES;
+			case DIV: return OP_DIV;
+			case NOT: return OP_NOT;
+			default: return OP_UNKNOWN;
+		}
 	}
 
 	public boolean BooleanOp() {
@@ -321,7 +430,17 @@ class Operator {
 	}
 
 	public String display(int level) {
-		Indenter indent = new Indenter(level);
-		return indent.display(getClass().toString().substring(6) + ": " + val);
+		StringBuilder sb = new StringBuilder();
+		try {
+			display(sb, level);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return sb.toString();
+	}
+
+	public void display(Appendable out, int level) throws IOException {
+		Indenter.header(out, level, this);
+		out.append(val);
 	}
 }
@@ -0,0 +1,87 @@
+package com.scanner.project;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+// The state layout every back end shares: one int slot per declaration,
+// in declaration order, bools stored as 0 and 1
+//
+// A Variable finds its slot through the dense id of its interned Symbol,
+// with no map lookup. Variables built by hand, without a Symbol from the
+// declarations' table, fall back to their case-folded name, as do all
+// variables when the declarations do not share one table. When a name
+// is declared twice the first declaration's slot is used.
+
+final class SlotLayout {
+    final String[] names;
+    final boolean[] bool;
+
+    // Symbol id -> slot (-1 if undeclared), for variables of table
+    private final SymbolTable table;
+    private int[] slotOf = new int[0];
+    // Case-folded name -> slot, for variables built without a Symbol
+    private final HashMap<String, Integer> byName = new HashMap<>();
+
+    SlotLayout(Declarations ds) {
+        int n = ds.size();
+        names = new String[n];
+        bool = new boolean[n];
+        SymbolTable t = null;
+        for (int i = 0; i < n; i++) {
+            Declaration d = (Declaration) ds.elementAt(i);
+            names[i] = d.v.id;
+            bool[i] = d.t.isBoolean();
+            byName.putIfAbsent(SymbolTable.fold(d.v.id), i);
+            // t is the first declaration's table until one has another
+            Symbol sym = d.v.symbol;
+            if (i == 0 && sym != null)
+                t = sym.table;
+            if (sym == null || sym.table != t)
+                t = null;
+            if (t != null) {
+                int id = sym.id;
+                if (id >= slotOf.length) {
+                    int old = slotOf.length;
+                    slotOf = Arrays.copyOf(slotOf, Math.max(id + 1, old * 2));
+                    Arrays.fill(slotOf, old, slotOf.length, -1);
+                }
+                if (slotOf[id] < 0)
+                    slotOf[id] = i;
+            }
+        }
+        table = t;
+    }
+
+    // Number of slots
+    int size() {
+        return names.length;
+    }
+
+    // Slot of v, or -1 if it was never declared
+    int slot(Variable v) {
+        Symbol sym = v.symbol;
+        if (sym != null && sym.table == table)
+            return sym.id < slotOf.length ? slotOf[sym.id] : -1;
+        return slot(v.id);
+    }
+
+    // Slot of the variable called name, or -1
+    int slot(String name) {
+        Integer s = byName.get(SymbolTable.fold(name));
+        return s == null ? -1 : s;
+    }
+
+    // "name = value" for every declared variable, one per line
+    String state(int[] slots) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < names.length; i++) {
+            sb.append(names[i]).append(" = ");
+            if (bool[i])
+                sb.append(slots[i] != 0);
+            else
+                sb.append(slots[i]);
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
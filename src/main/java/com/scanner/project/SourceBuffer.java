@@ -0,0 +1,115 @@
+package com.scanner.project;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+
+// A growable byte array that KAY sources are encoded or read into
+//
+// The scanner works on UTF-8 bytes, so text has to be encoded once and
+// streams read in full. A SourceBuffer keeps its array from one source
+// to the next, so a service that parses request after request stops
+// allocating once the array has grown to the largest program. The
+// KaySource it returns is only valid until the next call.
+
+public final class SourceBuffer {
+    private byte[] bytes;
+
+    public SourceBuffer() {
+        this(4096);
+    }
+
+    public SourceBuffer(int initialCapacity) {
+        bytes = new byte[Math.max(16, initialCapacity)];
+    }
+
+    // Encodes text as UTF-8, as String.getBytes would: an unpaired
+    // surrogate becomes '?'
+    public KaySource encode(CharSequence text) {
+        return encode(text, 0, text.length());
+    }
+
+    public KaySource encode(CharSequence text, int from, int to) {
+        byte[] b = ensure(to - from);
+        int n = 0;
+        int i = from;
+        // ASCII runs, the common case, need no further checks
+        while (i < to) {
+            char c = text.charAt(i);
+            if (c >= 0x80)
+                break;
+            b[n++] = (byte) c;
+            i++;
+        }
+        while (i < to) {
+            b = ensure(n + 4);
+            char c = text.charAt(i++);
+            if (c < 0x80) {
+                b[n++] = (byte) c;
+            } else if (c < 0x800) {
+                b[n++] = (byte) (0xC0 | (c >> 6));
+                b[n++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i < to && Character.isLowSurrogate(text.charAt(i))) {
+                    int cp = Character.toCodePoint(c, text.charAt(i++));
+                    b[n++] = (byte) (0xF0 | (cp >> 18));
+                    b[n++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                    b[n++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                    b[n++] = (byte) (0x80 | (cp & 0x3F));
+                } else {
+                    b[n++] = '?';
+                }
+            } else {
+                b[n++] = (byte) (0xE0 | (c >> 12));
+                b[n++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                b[n++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return source(n);
+    }
+
+    public KaySource encode(char[] chars, int offset, int length) {
+        return encode(CharBuffer.wrap(chars, offset, length), 0, length);
+    }
+
+    // Reads in to its end; in is not closed
+    public KaySource read(InputStream in) throws IOException {
+        int n = 0;
+        while (true) {
+            byte[] b = ensure(n + 1);
+            int r = in.read(b, n, b.length - n);
+            if (r < 0)
+                return source(n);
+            n += r;
+        }
+    }
+
+    // Reads in to its end; in is not closed
+    public KaySource read(ReadableByteChannel in) throws IOException {
+        int n = 0;
+        while (true) {
+            byte[] b = ensure(n + 1);
+            int r = in.read(ByteBuffer.wrap(b, n, b.length - n));
+            if (r < 0)
+                return source(n);
+            n += r;
+        }
+    }
+
+    // The array, grown to hold at least n bytes; contents are kept
+    private byte[] ensure(int n) {
+        if (n > bytes.length) {
+            if (n < 0)
+                throw new OutOfMemoryError("Source too large");
+            bytes = Arrays.copyOf(bytes, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(n, 2L * bytes.length)));
+        }
+        return bytes;
+    }
+
+    private KaySource source(int n) {
+        return KaySource.of(bytes, 0, n);
+    }
+}
@@ -0,0 +1,26 @@
+package com.scanner.project;
+
+// Source spans packed into one long: the start offset in the high 32
+// bits and the end offset in the low 32 bits, so an AST node pays eight
+// bytes for its position. Offsets are bytes into the parsed buffer and
+// LineMap turns them into lines and columns.
+
+public final class Span {
+    // Span of a node that was not built by the parser
+    public static final long NONE = -1L;
+
+    private Span() {
+    }
+
+    public static long of(int start, int end) {
+        return ((long) start << 32) | (end & 0xFFFFFFFFL);
+    }
+
+    public static int start(long span) {
+        return (int) (span >>> 32);
+    }
+
+    public static int end(long span) {
+        return (int) span;
+    }
+}
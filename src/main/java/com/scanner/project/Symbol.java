@@ -0,0 +1,27 @@
+package com.scanner.project;
+
+// An identifier interned by a SymbolTable. Every spelling gets one shared
+// Symbol; spellings that differ only in case (KAY identifiers are
+// case-insensitive) share the same dense id. hash is the case-insensitive
+// hash of name, computed once. serial numbers the spellings of a table
+// in the order they were first seen.
+
+public class Symbol {
+    public final SymbolTable table;
+    public final String name;
+    public final int id;
+    final int hash;
+    final int serial;
+
+    Symbol(SymbolTable table, String name, int id, int hash, int serial) {
+        this.table = table;
+        this.name = name;
+        this.id = id;
+        this.hash = hash;
+        this.serial = serial;
+    }
+
+    public String toString() {
+        return name;
+    }
+}
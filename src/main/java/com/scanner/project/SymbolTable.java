@@ -0,0 +1,136 @@
+package com.scanner.project;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+
+// Interns the identifiers of one parse. Lookups hash the UTF-8 bytes of
+// the lexeme straight from the scanner's buffer, so an identifier that
+// has been seen before costs no allocation. Ids are dense (0, 1, 2, ...)
+// and only meaningful within one table.
+
+public class SymbolTable {
+    // Open-addressing table of spellings; slots is a power of two in size
+    private Symbol[] slots = new Symbol[64];
+    private byte[][] spellings = new byte[64][];
+    private int spellingCount;
+    // Spellings by serial, in the order they were first seen
+    private Symbol[] bySerial = new Symbol[32];
+
+    // Case-folded name -> id, consulted only when a new spelling appears
+    private final HashMap<String, Integer> ids = new HashMap<>();
+    private String[] names = new String[16];
+
+    // The symbol spelled by bytes[from, to) of buf
+    public Symbol intern(ByteBuffer buf, int from, int to) {
+        int h = 0;
+        for (int i = from; i < to; i++)
+            h = 31 * h + buf.get(i);
+        int mask = slots.length - 1;
+        int i = mix(h) & mask;
+        while (slots[i] != null) {
+            if (sameBytes(spellings[i], buf, from, to))
+                return slots[i];
+            i = (i + 1) & mask;
+        }
+        byte[] bytes = new byte[to - from];
+        buf.get(from, bytes);
+        return add(i, bytes);
+    }
+
+    // The symbol spelled name
+    public Symbol intern(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        return intern(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    // Number of distinct ids handed out so far
+    public int size() {
+        return ids.size();
+    }
+
+    // Number of distinct spellings interned so far
+    int spellings() {
+        return spellingCount;
+    }
+
+    // The spelling with the given serial
+    Symbol spelling(int serial) {
+        return bySerial[serial];
+    }
+
+    // The first spelling seen for id
+    public String name(int id) {
+        return names[id];
+    }
+
+    private Symbol add(int slot, byte[] bytes) {
+        String name = new String(bytes, StandardCharsets.UTF_8);
+        String folded = fold(name);
+        Integer id = ids.get(folded);
+        if (id == null) {
+            id = ids.size();
+            ids.put(folded, id);
+            if (id == names.length)
+                names = Arrays.copyOf(names, id * 2);
+            names[id] = name;
+        }
+        Symbol s = new Symbol(this, name, id, folded.hashCode(), spellingCount);
+        slots[slot] = s;
+        spellings[slot] = bytes;
+        if (spellingCount == bySerial.length)
+            bySerial = Arrays.copyOf(bySerial, spellingCount * 2);
+        bySerial[spellingCount] = s;
+        if (++spellingCount * 2 > slots.length)
+            grow();
+        return s;
+    }
+
+    private void grow() {
+        Symbol[] oldSlots = slots;
+        byte[][] oldSpellings = spellings;
+        slots = new Symbol[oldSlots.length * 2];
+        spellings = new byte[oldSlots.length * 2][];
+        int mask = slots.length - 1;
+        for (int j = 0; j < oldSlots.length; j++) {
+            if (oldSlots[j] == null)
+                continue;
+            byte[] bytes = oldSpellings[j];
+            int h = 0;
+            for (byte b : bytes)
+                h = 31 * h + b;
+            int i = mix(h) & mask;
+            while (slots[i] != null)
+                i = (i + 1) & mask;
+            slots[i] = oldSlots[j];
+            spellings[i] = bytes;
+        }
+    }
+
+    private static int mix(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean sameBytes(byte[] bytes, ByteBuffer buf, int from, int to) {
+        if (bytes.length != to - from)
+            return false;
+        for (int i = 0; i < bytes.length; i++)
+            if (bytes[i] != buf.get(from + i))
+                return false;
+        return true;
+    }
+
+    // Case folding with the same equivalence as String.equalsIgnoreCase
+    static String fold(String name) {
+        char[] chars = name.toCharArray();
+        for (int i = 0; i < chars.length; i++)
+            chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+        return new String(chars);
+    }
+
+    // Case-insensitive hash, equal to the hash of a Symbol spelled name
+    static int foldedHash(String name) {
+        return fold(name).hashCode();
+    }
+}
@@ -0,0 +1,71 @@
+package com.scanner.project;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// The fixed terminals of KAY: every keyword, operator and separator the
+// scanner recognizes. Tokens carry one of these so the parser can compare
+// by identity instead of comparing strings; text is the interned lexeme.
+
+public enum Terminal {
+    // Keywords
+    MAIN("main", TokenKind.KEYWORD),
+    INTEGER("integer", TokenKind.KEYWORD),
+    BOOL("bool", TokenKind.KEYWORD),
+    IF("if", TokenKind.KEYWORD),
+    ELSE("else", TokenKind.KEYWORD),
+    WHILE("while", TokenKind.KEYWORD),
+    TRUE("True", TokenKind.KEYWORD),
+    FALSE("False", TokenKind.KEYWORD),
+    // Operators
+    ASSIGN(":=", TokenKind.OPERATOR),
+    PLUS("+", TokenKind.OPERATOR),
+    MINUS("-", TokenKind.OPERATOR),
+    TIMES("*", TokenKind.OPERATOR),
+    DIV("/", TokenKind.OPERATOR),
+    LT("<", TokenKind.OPERATOR),
+    GT(">", TokenKind.OPERATOR),
+    LE("<=", TokenKind.OPERATOR),
+    GE(">=", TokenKind.OPERATOR),
+    EQ("==", TokenKind.OPERATOR),
+    NE("!=", TokenKind.OPERATOR),
+    AND("&&", TokenKind.OPERATOR),
+    OR("||", TokenKind.OPERATOR),
+    NOT("!", TokenKind.OPERATOR),
+    // Separators
+    LPAREN("(", TokenKind.SEPARATOR),
+    RPAREN(")", TokenKind.SEPARATOR),
+    LBRACE("{", TokenKind.SEPARATOR),
+    RBRACE("}", TokenKind.SEPARATOR),
+    SEMICOLON(";", TokenKind.SEPARATOR),
+    COMMA(",", TokenKind.SEPARATOR);
+
+    public final String text;
+    public final TokenKind kind;
+
+    private static final Map<String, Terminal> byText = new HashMap<>();
+    private static final Terminal[] separators = new Terminal[128];
+
+    static {
+        for (Terminal t : values()) {
+            byText.put(t.text, t);
+            if (t.kind == TokenKind.SEPARATOR)
+                separators[t.text.charAt(0)] = t;
+        }
+    }
+
+    Terminal(String text, TokenKind kind) {
+        this.text = text;
+        this.kind = kind;
+    }
+
+    // The terminal spelled text, or null
+    public static Terminal lookup(String text) {
+        return byText.get(text);
+    }
+
+    // The separator for character c, or null
+    public static Terminal separator(int c) {
+        return c >= 0 && c < separators.length ? separators[c] : null;
+    }
+}
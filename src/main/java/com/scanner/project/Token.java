@@ -7,6 +7,36 @@ public class Token {
 	private String type;
 	// Token value
 	private String value;
+	// Kind matching type, and the terminal matching value
+	// (null for identifiers, literals and unrecognized input)
+	private TokenKind kind;
+	private Terminal terminal;
+	// Value of a Literal, converted by the scanner
+	private int intValue;
+	// Byte offset in the source, and 1-based line and column (0 if unknown).
+	// A scanned Token has lines instead, and works them out when asked.
+	private int offset;
+	private int line;
+	private int column;
+	private LineMap lines;
+
+	public Token(String type, String value) {
+		setType(type);
+		setValue(value);
+	}
+
+	public Token(TokenKind kind, String value) {
+		this.kind = kind;
+		this.type = kind.typeName();
+		this.value = value;
+	}
+
+	public Token(Terminal terminal) {
+		this.kind = terminal.kind;
+		this.type = kind.typeName();
+		this.terminal = terminal;
+		this.value = terminal.text;
+	}
 
 	/**
 	 * @param value
@@ -14,6 +44,7 @@ public class Token {
 	 */
 	public void setValue(String value) {
 		this.value = value;
+		classify();
 	}
 
 	/**
@@ -29,6 +60,8 @@ public class Token {
 	 */
 	public void setType(String type) {
 		this.type = type;
+		this.kind = TokenKind.of(type);
+		classify();
 	}
 
 	/**
@@ -38,6 +71,83 @@ public class Token {
 		return type;
 	}
 
+	/**
+	 * @return Returns the kind of a Token.
+	 */
+	public TokenKind getKind() {
+		return kind;
+	}
+
+	/**
+	 * @return Returns the keyword, operator or separator of a Token, or null.
+	 */
+	public Terminal getTerminal() {
+		return terminal;
+	}
+
+	/**
+	 * @param intValue
+	 *            . Set the value of a Literal Token.
+	 */
+	public void setIntValue(int intValue) {
+		this.intValue = intValue;
+	}
+
+	/**
+	 * @return Returns the value of a Literal Token.
+	 */
+	public int getIntValue() {
+		return intValue;
+	}
+
+	/**
+	 * @param offset
+	 *            . Set the byte offset, line and column of a Token.
+	 */
+	public void setPosition(int offset, int line, int column) {
+		this.offset = offset;
+		this.line = line;
+		this.column = column;
+		this.lines = null;
+	}
+
+	/**
+	 * @param offset
+	 *            . Set the byte offset of a Token, with the LineMap of its
+	 *            source for its line and column.
+	 */
+	public void setPosition(int offset, LineMap lines) {
+		this.offset = offset;
+		this.lines = lines;
+	}
+
+	/**
+	 * @return Returns the byte offset of a Token in its source.
+	 */
+	public int getOffset() {
+		return offset;
+	}
+
+	/**
+	 * @return Returns the line of a Token, from 1, or 0 if unknown.
+	 */
+	public int getLine() {
+		return lines != null ? lines.line(offset) : line;
+	}
+
+	/**
+	 * @return Returns the column of a Token, from 1, or 0 if unknown.
+	 */
+	public int getColumn() {
+		return lines != null ? lines.column(offset) : column;
+	}
+
+	// Recomputes terminal after a setter changed type or value
+	private void classify() {
+		Terminal t = value == null ? null : Terminal.lookup(value);
+		terminal = t != null && t.kind == kind ? t : null;
+	}
+
 	public String toString() {
 		return "Value: " + this.getValue() + " " + "Type: " + this.getType();
 	}
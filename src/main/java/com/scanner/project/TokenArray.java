@@ -0,0 +1,338 @@
+package com.scanner.project;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+// The tokens of one source in parallel int arrays, for parsing the same
+// unchanged source again without scanning it
+//
+// tokenize() runs TokenStream once and records, per token, the kind and
+// terminal, the offset, the length and a value: the literal's value, or
+// for an identifier the serial of its spelling in the array's spelling
+// table. A scan error is recorded too, so a cursor reports it at the same
+// token TokenStream would, after any syntax error before it.
+//
+// cursor() walks the arrays as a TokenCursor for ConcreteSyntax. It still
+// needs the source bytes for the text of identifiers and for line and
+// column numbers, but nothing is scanned: advancing is a few array reads.
+// Identifiers are interned in the order they were first seen, so symbol
+// ids are the ones a scanning parse hands out.
+//
+// write() and read() use a versioned binary format (see TokenCache):
+//
+//   "KAYT" version:int grammar:long size:long sha256:byte[32] count:int
+//   kinds[count] offsets[count] lengths[count] values[count]   (int each)
+//   spellings:int (length:int utf8-bytes)*
+//   error:byte [offset:int length:int utf8-message]
+//
+// in big-endian order. size and the SHA-256 digest identify the source
+// the tokens were taken from. grammar fingerprints the TokenKind and
+// Terminal constants whose ordinals the kinds column stores, so data
+// written before either enum changed is not read back.
+
+public final class TokenArray {
+    static final int MAGIC = 0x4B415954;    // "KAYT"
+    static final int VERSION = 2;
+    private static final int HEADER = 4 + 4 + 8 + 8 + 32 + 4;
+
+    private static final TokenKind[] KINDS = TokenKind.values();
+    private static final Terminal[] TERMINALS = Terminal.values();
+    static final long GRAMMAR = grammar();
+
+    // kind ordinal in the low byte, terminal ordinal + 1 (0 for none) above
+    private final int[] kinds;
+    private final int[] offsets;
+    private final int[] lengths;
+    private final int[] values;
+    private final int count;
+    private final String[] spellings;
+    // Scan error after the last token, or null
+    private final String error;
+    private final int errorOffset;
+    private final long sourceSize;
+    private final byte[] sourceDigest;
+
+    private TokenArray(int[] kinds, int[] offsets, int[] lengths, int[] values, int count,
+            String[] spellings, String error, int errorOffset, long sourceSize, byte[] sourceDigest) {
+        this.kinds = kinds;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.values = values;
+        this.count = count;
+        this.spellings = spellings;
+        this.error = error;
+        this.errorOffset = errorOffset;
+        this.sourceSize = sourceSize;
+        this.sourceDigest = sourceDigest;
+    }
+
+    // The first 8 bytes of the SHA-256 of every kind and terminal
+    private static long grammar() {
+        MessageDigest md = TokenCache.sha256();
+        StringBuilder sb = new StringBuilder();
+        for (TokenKind k : KINDS)
+            sb.append(k.name()).append('\n');
+        for (Terminal t : TERMINALS)
+            sb.append(t.name()).append(' ').append(t.kind.name()).append(' ').append(t.text).append('\n');
+        return ByteBuffer.wrap(md.digest(sb.toString().getBytes(StandardCharsets.UTF_8))).getLong();
+    }
+
+    // Scans source once; offsets are relative to the start of its bytes
+    public static TokenArray tokenize(KaySource source) {
+        return tokenize(source, TokenCache.digest(source));
+    }
+
+    // As above, for a source whose TokenCache.digest() is known
+    static TokenArray tokenize(KaySource source, byte[] digest) {
+        ByteBuffer bytes = source.bytes();
+        int base = bytes.position();
+        TokenStream ts = new TokenStream(bytes, source.name());
+        int n = 0;
+        int capacity = Math.max(16, source.size() / 4);
+        int[] kinds = new int[capacity];
+        int[] offsets = new int[capacity];
+        int[] lengths = new int[capacity];
+        int[] values = new int[capacity];
+        String error = null;
+        int errorOffset = 0;
+        try {
+            TokenKind k;
+            do {
+                k = ts.advance();
+                if (n == kinds.length) {
+                    capacity = n * 2;
+                    kinds = Arrays.copyOf(kinds, capacity);
+                    offsets = Arrays.copyOf(offsets, capacity);
+                    lengths = Arrays.copyOf(lengths, capacity);
+                    values = Arrays.copyOf(values, capacity);
+                }
+                Terminal t = ts.terminal();
+                kinds[n] = (t == null ? 0 : t.ordinal() + 1) << 8 | k.ordinal();
+                offsets[n] = ts.start() - base;
+                lengths[n] = ts.end() - ts.start();
+                values[n] = k == TokenKind.IDENTIFIER ? ts.symbol().serial : ts.intValue();
+                n++;
+            } while (k != TokenKind.EOF);
+        } catch (KaySyntaxException e) {
+            error = e.getMessage();
+            errorOffset = e.getOffset() - base;
+        }
+        SymbolTable symbols = ts.symbols();
+        String[] spellings = new String[symbols.spellings()];
+        for (int i = 0; i < spellings.length; i++)
+            spellings[i] = symbols.spelling(i).name;
+        return new TokenArray(kinds, offsets, lengths, values, n, spellings, error, errorOffset,
+                source.size(), digest);
+    }
+
+    // Number of tokens, EOF included unless there is a scan error
+    public int size() {
+        return count;
+    }
+
+    // Size in bytes of the source the tokens were taken from
+    public long sourceSize() {
+        return sourceSize;
+    }
+
+    // TokenCache.digest() of the source the tokens were taken from
+    public byte[] sourceDigest() {
+        return sourceDigest.clone();
+    }
+
+    // True if the tokens were taken from a source of this size and digest
+    boolean isFor(long size, byte[] digest) {
+        return sourceSize == size && MessageDigest.isEqual(sourceDigest, digest);
+    }
+
+    // A cursor over the tokens; source must hold the bytes they were
+    // taken from
+    public TokenCursor cursor(KaySource source) {
+        if (source.size() != sourceSize)
+            throw new IllegalArgumentException("Source is " + source.size() + " bytes, tokens are for " + sourceSize);
+        return new Cursor(source);
+    }
+
+    private final class Cursor implements TokenCursor {
+        private final ByteBuffer buffer;
+        private final String name;
+        private final int base;
+        private final SymbolTable symbols = new SymbolTable();
+        private final Symbol[] bySerial;
+        private int i = -1;
+        private TokenKind kind;
+        private Terminal terminal;
+        private LineMap lines;
+
+        Cursor(KaySource source) {
+            buffer = source.bytes();
+            name = source.name();
+            base = buffer.position();
+            bySerial = new Symbol[spellings.length];
+        }
+
+        public TokenKind advance() {
+            if (kind == TokenKind.EOF)
+                return kind;
+            if (i + 1 == count)
+                throw new KaySyntaxException(error, lines(), base + errorOffset);
+            int k = kinds[++i];
+            int t = k >>> 8;
+            terminal = t == 0 ? null : TERMINALS[t - 1];
+            kind = KINDS[k & 0xFF];
+            return kind;
+        }
+
+        public TokenKind kind() {
+            return kind;
+        }
+
+        public Terminal terminal() {
+            return terminal;
+        }
+
+        public int start() {
+            return base + offsets[i];
+        }
+
+        public int end() {
+            return base + offsets[i] + lengths[i];
+        }
+
+        public int intValue() {
+            return kind == TokenKind.IDENTIFIER ? 0 : values[i];
+        }
+
+        // Spellings are interned on first use, in first-seen order
+        public Symbol symbol() {
+            int serial = values[i];
+            Symbol s = bySerial[serial];
+            if (s == null)
+                s = bySerial[serial] = symbols.intern(spellings[serial]);
+            return s;
+        }
+
+        public SymbolTable symbols() {
+            return symbols;
+        }
+
+        public String text() {
+            if (terminal != null)
+                return terminal.text;
+            if (kind == TokenKind.EOF)
+                return "";
+            byte[] bytes = new byte[lengths[i]];
+            buffer.get(start(), bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        public LineMap lines() {
+            if (lines == null)
+                lines = new LineMap(buffer, base, buffer.limit(), name);
+            return lines;
+        }
+    }
+
+    public void write(WritableByteChannel out) throws IOException {
+        byte[][] spelled = new byte[spellings.length][];
+        long size = HEADER + 16L * count + 4 + 1;
+        for (int j = 0; j < spellings.length; j++) {
+            spelled[j] = spellings[j].getBytes(StandardCharsets.UTF_8);
+            size += 4 + spelled[j].length;
+        }
+        byte[] message = error == null ? null : error.getBytes(StandardCharsets.UTF_8);
+        if (message != null)
+            size += 8 + message.length;
+        if (size > Integer.MAX_VALUE)
+            throw new IOException("Token array too large to write");
+
+        ByteBuffer b = ByteBuffer.allocate((int) size);
+        b.putInt(MAGIC).putInt(VERSION).putLong(GRAMMAR).putLong(sourceSize).put(sourceDigest).putInt(count);
+        for (int[] column : new int[][] { kinds, offsets, lengths, values }) {
+            b.asIntBuffer().put(column, 0, count);
+            b.position(b.position() + 4 * count);
+        }
+        b.putInt(spelled.length);
+        for (byte[] s : spelled)
+            b.putInt(s.length).put(s);
+        b.put((byte) (message == null ? 0 : 1));
+        if (message != null)
+            b.putInt(errorOffset).putInt(message.length).put(message);
+        b.flip();
+        while (b.hasRemaining())
+            out.write(b);
+    }
+
+    // Reads a token array written by write(); IOException if the data is
+    // not one, is of another version or grammar, or is cut short
+    public static TokenArray read(ReadableByteChannel in, long length) throws IOException {
+        if (length < HEADER || length > Integer.MAX_VALUE)
+            throw new IOException("Not a token array");
+        ByteBuffer b = ByteBuffer.allocate((int) length);
+        while (b.hasRemaining() && in.read(b) >= 0) {
+        }
+        if (b.hasRemaining())
+            throw new IOException("Token array cut short");
+        b.flip();
+        try {
+            if (b.getInt() != MAGIC)
+                throw new IOException("Not a token array");
+            int version = b.getInt();
+            if (version != VERSION)
+                throw new IOException("Token array version " + version + ", expected " + VERSION);
+            if (b.getLong() != GRAMMAR)
+                throw new IOException("Token array written for another grammar");
+            long sourceSize = b.getLong();
+            byte[] sourceDigest = new byte[32];
+            b.get(sourceDigest);
+            int count = b.getInt();
+            if (count < 0 || 16L * count > b.remaining())
+                throw new IOException("Token array cut short");
+            int[][] columns = new int[4][count];
+            for (int[] column : columns) {
+                b.asIntBuffer().get(column);
+                b.position(b.position() + 4 * count);
+            }
+            String[] spellings = new String[b.getInt()];
+            for (int j = 0; j < spellings.length; j++)
+                spellings[j] = string(b);
+            String error = null;
+            int errorOffset = 0;
+            if (b.get() != 0) {
+                errorOffset = b.getInt();
+                error = string(b);
+            }
+            // Checked once here so a cursor can trust every entry
+            for (int j = 0; j < count; j++) {
+                int k = columns[0][j];
+                int kind = k & 0xFF;
+                int terminal = k >>> 8;
+                long end = (long) columns[1][j] + columns[2][j];
+                if (kind >= KINDS.length || terminal > TERMINALS.length || columns[1][j] < 0 || columns[2][j] < 0
+                        || end > sourceSize
+                        || (KINDS[kind] == TokenKind.IDENTIFIER && (columns[3][j] < 0 || columns[3][j] >= spellings.length)))
+                    throw new IOException("Corrupt token array");
+            }
+            if (error != null && (errorOffset < 0 || errorOffset > sourceSize))
+                throw new IOException("Corrupt token array");
+            if (error == null && (count == 0 || (columns[0][count - 1] & 0xFF) != TokenKind.EOF.ordinal()))
+                throw new IOException("Corrupt token array");
+            return new TokenArray(columns[0], columns[1], columns[2], columns[3], count, spellings,
+                    error, errorOffset, sourceSize, sourceDigest);
+        } catch (RuntimeException e) {
+            // BufferUnderflowException, NegativeArraySizeException and the like
+            throw new IOException("Corrupt token array", e);
+        }
+    }
+
+    private static String string(ByteBuffer b) {
+        byte[] bytes = new byte[b.getInt()];
+        b.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,116 @@
+package com.scanner.project;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.AtomicLong;
+
+// An on-disk cache of TokenArrays, for sources that are parsed again and
+// again without changing
+//
+// Entries are keyed by the SHA-256 digest and size of the source bytes,
+// in files named "<sha256>-<size>.kayt" under one directory, and carry
+// the same key in their header. A hit takes identifier spellings from
+// the entry, so the key has to be one that cannot be forged to collide.
+// A hit costs one pass over the source to hash it and one read of the
+// entry; the parse then reads the arrays and never scans. A missing,
+// stale, corrupt, other-version or other-grammar entry is a miss: the
+// source is tokenized and the entry written again, through a temporary
+// file renamed into place, so concurrent readers never see half an
+// entry. Failing to write an entry does not fail the parse.
+
+public final class TokenCache {
+    private final Path directory;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public TokenCache(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform has SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // SHA-256 of the source bytes
+    static byte[] digest(KaySource source) {
+        MessageDigest md = sha256();
+        md.update(source.bytes());
+        return md.digest();
+    }
+
+    // The tokens of source, from the cache if it has them
+    public TokenArray tokens(KaySource source) throws IOException {
+        byte[] digest = digest(source);
+        StringBuilder name = new StringBuilder(80);
+        for (byte b : digest)
+            name.append(Character.forDigit(b >> 4 & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        Path entry = directory.resolve(name.append('-').append(source.size()).append(".kayt").toString());
+        TokenArray cached = read(entry);
+        if (cached != null && cached.isFor(source.size(), digest)) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        misses.incrementAndGet();
+        TokenArray tokens = TokenArray.tokenize(source, digest);
+        write(entry, tokens);
+        return tokens;
+    }
+
+    // Parses file fail-fast, through the cache
+    public ParseResult tryParse(Path file) throws IOException {
+        KaySource source = KaySource.file(file);
+        return ConcreteSyntax.tryParse(tokens(source).cursor(source));
+    }
+
+    // Parses file fail-fast, through the cache; throws the syntax error
+    public Program parse(Path file) throws IOException {
+        KaySource source = KaySource.file(file);
+        return new ConcreteSyntax(tokens(source).cursor(source)).program();
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    private static TokenArray read(Path entry) {
+        try (FileChannel in = FileChannel.open(entry, StandardOpenOption.READ)) {
+            return TokenArray.read(in, in.size());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void write(Path entry, TokenArray tokens) {
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(directory, "entry", ".tmp");
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                tokens.write(out);
+            }
+            Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // Best effort; the parse does not depend on the cache
+                }
+            }
+        }
+    }
+}
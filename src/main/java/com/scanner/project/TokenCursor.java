@@ -0,0 +1,39 @@
+package com.scanner.project;
+
+// The token cursor ConcreteSyntax parses from
+//
+// advance() moves onto the next token, which the other methods then
+// describe; offsets are byte offsets into the UTF-8 source. TokenStream
+// scans on the calling thread; PipelinedTokens reads tokens that a
+// scanner thread has already produced.
+
+public interface TokenCursor {
+
+    // Moves to the next token and returns its kind; EOF repeats at the end
+    TokenKind advance();
+
+    TokenKind kind();
+
+    // Keyword, operator or separator of the current token, or null
+    Terminal terminal();
+
+    // Offset of the first byte of the current token
+    int start();
+
+    // Offset just past the last byte of the current token
+    int end();
+
+    // Value of the current token if it is a Literal
+    int intValue();
+
+    // The interned symbol of the current token if it is an Identifier
+    Symbol symbol();
+
+    SymbolTable symbols();
+
+    // Text of the current token
+    String text();
+
+    // Line and column table of the source
+    LineMap lines();
+}
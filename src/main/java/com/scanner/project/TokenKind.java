@@ -0,0 +1,32 @@
+package com.scanner.project;
+
+// Token kinds of the KAY scanner. typeName() is the string that
+// Token.getType() has always reported for the kind.
+
+public enum TokenKind {
+    IDENTIFIER("Identifier"),
+    KEYWORD("Keyword"),
+    LITERAL("Literal"),
+    SEPARATOR("Separator"),
+    OPERATOR("Operator"),
+    OTHER("Other"),
+    EOF("EOF");
+
+    private final String typeName;
+
+    TokenKind(String typeName) {
+        this.typeName = typeName;
+    }
+
+    public String typeName() {
+        return typeName;
+    }
+
+    // The kind named by a Token type string, or null if there is none
+    public static TokenKind of(String typeName) {
+        for (TokenKind k : values())
+            if (k.typeName.equals(typeName))
+                return k;
+        return null;
+    }
+}
@@ -1,120 +1,308 @@
 package com.scanner.project;
 
 import java.io.*;
-import java.util.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 
 // KAY language scanner
+//
+// The source is scanned by index over a ByteBuffer holding UTF-8 text.
+// advance() moves a cursor onto the next token, which kind(), terminal(),
+// start(), end() and intValue() then describe; lexemes are byte offsets
+// into the buffer, so scanning allocates nothing. text() and nextToken()
+// build Strings and Tokens for callers that want them. line() and
+// column() come from a LineMap built on demand, so positions cost
+// nothing until they are asked for: an error, or a Token, keeps its
+// offset and the LineMap and works them out when read.
 
-public class TokenStream {
-    private BufferedReader reader;
+public class TokenStream implements TokenCursor {
+    // The whole source sits in buffer and is scanned in place. currentChar
+    // starts at offset charStart and pos is the offset of the next unread
+    // byte. Lookahead peeks at buffer[pos] instead of using mark/reset.
+    private ByteBuffer buffer;
+    private int pos;
+    private int limit;
     private int currentChar;
+    private int charStart;
+    private int base;
+    private String name;
+    private LineMap lines;
 
-    private static final Set<String> keywords = new HashSet<>(Arrays.asList(
-        "main", "integer", "bool", "if", "else", "while", "True", "False"
-    ));
+    // The token under the cursor
+    private TokenKind kind;
+    private Terminal terminal;
+    private int start;
+    private int end;
+    private int intValue;
 
-    private static final Set<String> operators = new HashSet<>(Arrays.asList(
-        ":=", "+", "-", "*", "/", "<", ">", "<=", ">=", "==", "!=", "&&", "||", "!"
-    ));
+    // Identifiers seen by this stream, kept across resets until it holds
+    // more than MAX_KEPT_SYMBOLS, so a long-lived stream fed unrelated
+    // sources does not grow without bound
+    private SymbolTable symbols = new SymbolTable();
+    private static final int MAX_KEPT_SYMBOLS = 4096;
 
-    private static final Set<Character> separators = new HashSet<>(Arrays.asList(
-        '(', ')', '{', '}', ';', ','
-    ));
+    // Keywords grouped by their first character
+    private static final Terminal[][] keywords = new Terminal[128][];
+
+    // Classes of the ASCII characters, indexed by character. They are
+    // copied from Character.isLetter, isDigit and isWhitespace, which
+    // remain the fallback for characters at or above 0x80.
+    private static final byte LETTER = 1;
+    private static final byte DIGIT = 2;
+    private static final byte SPACE = 4;
+    private static final byte[] charClass = new byte[128];
+
+    static {
+        for (int c = 0; c < charClass.length; c++) {
+            if (Character.isLetter(c))
+                charClass[c] |= LETTER;
+            if (Character.isDigit(c))
+                charClass[c] |= DIGIT;
+            if (Character.isWhitespace(c))
+                charClass[c] |= SPACE;
+        }
+        for (Terminal t : Terminal.values()) {
+            if (t.kind != TokenKind.KEYWORD)
+                continue;
+            int c = t.text.charAt(0);
+            Terminal[] group = keywords[c] == null ? new Terminal[1]
+                    : Arrays.copyOf(keywords[c], keywords[c].length + 1);
+            group[group.length - 1] = t;
+            keywords[c] = group;
+        }
+    }
 
     public TokenStream(String filename) {
+        this(map(filename), filename);
+    }
+
+    // Scans the bytes between source.position() and source.limit() by index.
+    // The source is UTF-8; the buffer's position is left untouched.
+    public TokenStream(ByteBuffer source) {
+        this(source, null);
+    }
+
+    // As above; name is the file name used in error positions
+    public TokenStream(ByteBuffer source, String name) {
+        reset(source, name);
+    }
+
+    // Scans any KaySource: a String, char[] or byte[] slice, stream or file
+    public TokenStream(KaySource source) {
+        this(source.bytes(), source.name());
+    }
+
+    // As above, interning identifiers into symbols
+    TokenStream(ByteBuffer source, String name, SymbolTable symbols) {
+        reset(source, name);
+        this.symbols = symbols;
+    }
+
+    // Starts over on a new source, keeping the symbol table. Tokens,
+    // LineMaps and errors from the previous source stay valid only as
+    // long as its bytes do.
+    public void reset(ByteBuffer source, String name) {
+        buffer = source;
+        pos = base = source.position();
+        limit = source.limit();
+        this.name = name;
+        lines = null;
+        kind = null;
+        terminal = null;
+        start = end = intValue = 0;
+        if (symbols.size() > MAX_KEPT_SYMBOLS)
+            symbols = new SymbolTable();
+        readNextChar();
+    }
+
+    public void reset(KaySource source) {
+        reset(source.bytes(), source.name());
+    }
+
+    // Interns into a new, empty table from now on, so symbols already
+    // handed out are never touched again by this stream
+    void newSymbols() {
+        symbols = new SymbolTable();
+    }
+
+    // As the original reader did, a file that cannot be opened is reported
+    // and scans as empty. Any other failure, a file too large to map
+    // included, is thrown: scanning nothing would report a bogus result.
+    static ByteBuffer map(String filename) {
         try {
-            reader = new BufferedReader(new FileReader(filename));
-            currentChar = reader.read();
-        } catch (IOException e) {
+            return map(Paths.get(filename));
+        } catch (NoSuchFileException | AccessDeniedException e) {
             System.out.println("File not found: " + filename);
+            return ByteBuffer.allocate(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Memory-maps path. Offsets are ints throughout the scanner, parser
+    // and spans, so a file over 2 GB is an IOException.
+    static ByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+                throw new IOException("File too large to scan: " + path + " (" + size + " bytes)");
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
         }
     }
 
     private void readNextChar() {
-        try {
-            currentChar = reader.read();
-        } catch (IOException e) {
+        charStart = pos;
+        if (pos >= limit) {
             currentChar = -1;
+            return;
+        }
+        int b = buffer.get(pos++);
+        currentChar = b >= 0 ? b : decodeMultiByte(b);
+    }
+
+    // Decodes the rest of a UTF-8 sequence whose lead byte is b, so that
+    // non-ASCII characters classify as they would in a decoded String.
+    // Malformed input decodes to U+FFFD.
+    private int decodeMultiByte(int b) {
+        int extra;
+        int cp;
+        if ((b & 0xE0) == 0xC0) {
+            extra = 1;
+            cp = b & 0x1F;
+        } else if ((b & 0xF0) == 0xE0) {
+            extra = 2;
+            cp = b & 0x0F;
+        } else if ((b & 0xF8) == 0xF0) {
+            extra = 3;
+            cp = b & 0x07;
+        } else {
+            return 0xFFFD;
+        }
+        for (int i = 0; i < extra; i++) {
+            if (pos >= limit || (buffer.get(pos) & 0xC0) != 0x80)
+                return 0xFFFD;
+            cp = (cp << 6) | (buffer.get(pos++) & 0x3F);
         }
+        return cp;
+    }
+
+    // The character after currentChar, without consuming it
+    private int peekChar() {
+        return pos < limit ? buffer.get(pos) : -1;
+    }
+
+    private static boolean isLetter(int c) {
+        return (c & ~0x7F) == 0 ? (charClass[c] & LETTER) != 0 : c > 0 && Character.isLetter(c);
+    }
+
+    private static boolean isDigit(int c) {
+        return (c & ~0x7F) == 0 ? (charClass[c] & DIGIT) != 0 : c > 0 && Character.isDigit(c);
     }
 
-    private boolean isLetter(int c) {
-        return Character.isLetter((char) c);
+    private static boolean isWhitespace(int c) {
+        return (c & ~0x7F) == 0 ? (charClass[c] & SPACE) != 0 : c > 0 && Character.isWhitespace(c);
     }
 
-    private boolean isDigit(int c) {
-        return Character.isDigit((char) c);
+    // Advances pos past the ASCII bytes in any of the classes in mask;
+    // the caller then reads the character that stopped the run.
+    private void skipAscii(int mask) {
+        ByteBuffer buf = buffer;
+        int p = pos;
+        int n = limit;
+        while (p < n) {
+            int b = buf.get(p);
+            if (b < 0 || (charClass[b] & mask) == 0)
+                break;
+            p++;
+        }
+        pos = p;
     }
 
     private void skipWhitespaceAndComments() {
         while (currentChar != -1) {
-            if (Character.isWhitespace(currentChar)) {
+            if (isWhitespace(currentChar)) {
+                skipAscii(SPACE);
+                readNextChar();
+            } else if (currentChar == '/' && peekChar() == '/') {
+                // UTF-8 never uses the byte '\n' inside a multi-byte character
+                ByteBuffer buf = buffer;
+                int p = pos;
+                while (p < limit && buf.get(p) != '\n')
+                    p++;
+                pos = p;
                 readNextChar();
-            } else if (currentChar == '/') {
-                try {
-                    reader.mark(2);
-                    readNextChar();
-                    if (currentChar == '/') {
-                        while (currentChar != -1 && currentChar != '\n') {
-                            readNextChar();
-                        }
-                    } else {
-                        reader.reset();
-                        currentChar = '/';
-                        break;
-                    }
-                } catch (IOException e) {
-                    break;
-                }
             } else {
                 break;
             }
         }
     }
 
-    public Token nextToken() {
+    // Moves the cursor to the next token and returns its kind
+    public TokenKind advance() {
         skipWhitespaceAndComments();
+        start = charStart;
+        terminal = null;
 
         if (currentChar == -1) {
-            return new Token("EOF", "");
+            kind = TokenKind.EOF;
+            end = start;
+            return kind;
         }
 
         // Identifiers or keywords
         if (isLetter(currentChar)) {
-            StringBuilder sb = new StringBuilder();
-            while (isLetter(currentChar) || isDigit(currentChar)) {
-                sb.append((char) currentChar);
+            do {
+                skipAscii(LETTER | DIGIT);
                 readNextChar();
-            }
-            String word = sb.toString();
-            if (keywords.contains(word))
-                return new Token("Keyword", word);
-            else
-                return new Token("Identifier", word);
+            } while (isLetter(currentChar) || isDigit(currentChar));
+            end = charStart;
+            terminal = keyword(start, end);
+            kind = terminal != null ? TokenKind.KEYWORD : TokenKind.IDENTIFIER;
+            return kind;
         }
 
         // Numbers
         if (isDigit(currentChar)) {
-            StringBuilder sb = new StringBuilder();
+            int value = 0;
+            boolean overflow = false;
             while (isDigit(currentChar)) {
-                sb.append((char) currentChar);
+                int d = currentChar <= '9' ? currentChar - '0' : Character.digit(currentChar, 10);
+                if (value > (Integer.MAX_VALUE - d) / 10)
+                    overflow = true;
+                value = value * 10 + d;
                 readNextChar();
             }
-            return new Token("Literal", sb.toString());
+            end = charStart;
+            kind = TokenKind.LITERAL;
+            if (overflow)
+                throw new KaySyntaxException("Scan error - Integer literal out of range at offset "
+                        + start + ": " + text(start, end), lines(), start);
+            intValue = value;
+            return kind;
         }
 
-        // Separators
-        if (separators.contains((char) currentChar)) {
-            char c = (char) currentChar;
-            readNextChar();
-            return new Token("Separator", String.valueOf(c));
+        // Separators and one-char operators
+        Terminal t = Terminal.separator(currentChar);
+        if (t == null) {
+            t = currentChar == '+' ? Terminal.PLUS
+              : currentChar == '-' ? Terminal.MINUS
+              : currentChar == '*' ? Terminal.TIMES
+              : currentChar == '/' ? Terminal.DIV
+              : null;
         }
-
-        // Operators
-        if (currentChar == '+' || currentChar == '-' || currentChar == '*' || currentChar == '/') {
-            char c = (char) currentChar;
+        if (t != null) {
             readNextChar();
-            return new Token("Operator", String.valueOf(c));
+            end = charStart;
+            terminal = t;
+            kind = t.kind;
+            return kind;
         }
 
         // Two-char operators and special cases
@@ -122,30 +310,148 @@ public class TokenStream {
             currentChar == '=' || currentChar == '!' ||
             currentChar == '&' || currentChar == '|') {
 
-            StringBuilder sb = new StringBuilder();
-            char firstChar = (char) currentChar;
-            sb.append(firstChar);
+            int firstChar = currentChar;
+            int secondChar = -1;
             readNextChar();
 
-            if (currentChar == '=') {
-                sb.append((char) currentChar);
-                readNextChar();
-            } else if ((firstChar == '&' && currentChar == '&') ||
-                       (firstChar == '|' && currentChar == '|')) {
-                sb.append((char) currentChar);
+            if (currentChar == '=' ||
+                (firstChar == '&' && currentChar == '&') ||
+                (firstChar == '|' && currentChar == '|')) {
+                secondChar = currentChar;
                 readNextChar();
             }
 
-            String op = sb.toString();
-            if (operators.contains(op))
-                return new Token("Operator", op);
-            else
-                return new Token("Other", op);
+            end = charStart;
+            terminal = operator(firstChar, secondChar);
+            kind = terminal != null ? TokenKind.OPERATOR : TokenKind.OTHER;
+            return kind;
         }
 
         // Everything else
-        char bad = (char) currentChar;
         readNextChar();
-        return new Token("Other", String.valueOf(bad));
+        end = charStart;
+        kind = TokenKind.OTHER;
+        return kind;
+    }
+
+    // The keyword spelled by buffer[from, to), or null
+    private Terminal keyword(int from, int to) {
+        int first = buffer.get(from);
+        if (first < 0)
+            return null;
+        Terminal[] group = keywords[first];
+        if (group == null)
+            return null;
+        for (Terminal t : group) {
+            String text = t.text;
+            if (text.length() != to - from)
+                continue;
+            int i = 1;
+            while (i < text.length() && buffer.get(from + i) == text.charAt(i))
+                i++;
+            if (i == text.length())
+                return t;
+        }
+        return null;
+    }
+
+    // The operator spelled first followed by second (-1 if none), or null
+    private static Terminal operator(int first, int second) {
+        switch (first) {
+            case ':': return second == '=' ? Terminal.ASSIGN : null;
+            case '<': return second == '=' ? Terminal.LE : Terminal.LT;
+            case '>': return second == '=' ? Terminal.GE : Terminal.GT;
+            case '=': return second == '=' ? Terminal.EQ : null;
+            case '!': return second == '=' ? Terminal.NE : Terminal.NOT;
+            case '&': return second == '&' ? Terminal.AND : null;
+            case '|': return second == '|' ? Terminal.OR : null;
+            default: return null;
+        }
+    }
+
+    // Kind of the current token
+    public TokenKind kind() {
+        return kind;
+    }
+
+    // Keyword, operator or separator of the current token, or null
+    public Terminal terminal() {
+        return terminal;
+    }
+
+    // Offset of the first byte of the current token
+    public int start() {
+        return start;
+    }
+
+    // Offset just past the last byte of the current token
+    public int end() {
+        return end;
+    }
+
+    // Line of the current token, from 1
+    public int line() {
+        return lines().line(start);
+    }
+
+    // Column of the current token in characters, from 1
+    public int column() {
+        return lines().column(start);
+    }
+
+    // Line and column table of this stream's source
+    public LineMap lines() {
+        if (lines == null)
+            lines = new LineMap(buffer, base, limit, name);
+        return lines;
+    }
+
+    // Value of the current token if it is a Literal, accumulated while
+    // the digits were scanned
+    public int intValue() {
+        return intValue;
+    }
+
+    // The interned symbol of the current token if it is an Identifier
+    public Symbol symbol() {
+        return symbols.intern(buffer, start, end);
+    }
+
+    // Symbol table shared by every identifier of this stream
+    public SymbolTable symbols() {
+        return symbols;
+    }
+
+    // Text of the current token; allocates only for identifiers,
+    // literals and unrecognized input
+    public String text() {
+        if (terminal != null)
+            return terminal.text;
+        if (kind == TokenKind.EOF)
+            return "";
+        return text(start, end);
+    }
+
+    // Decodes buffer[from, to)
+    public String text(int from, int to) {
+        if (buffer.hasArray())
+            return new String(buffer.array(), buffer.arrayOffset() + from, to - from, StandardCharsets.UTF_8);
+        byte[] bytes = new byte[to - from];
+        buffer.get(from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // The current token as a Token object
+    public Token token() {
+        Token t = terminal != null ? new Token(terminal) : new Token(kind, text());
+        if (kind == TokenKind.LITERAL)
+            t.setIntValue(intValue);
+        t.setPosition(start, lines());
+        return t;
+    }
+
+    public Token nextToken() {
+        advance();
+        return token();
     }
 }
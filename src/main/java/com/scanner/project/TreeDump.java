@@ -0,0 +1,147 @@
+package com.scanner.project;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+// Streams a Program to a Writer or OutputStream while walking the tree,
+// so the rendered output never has to fit in memory: besides the tree
+// itself, memory is bounded by the output buffer and the tree's depth.
+//
+// TEXT is exactly what Program.display() returns. COMPACT is a
+// machine-readable S-expression on one line:
+//
+//   (program (declarations (integer i) (bool b))
+//     (block (:= i 7) (if b (block) (block)) (while (< i 10) (block))))
+//
+// where leaves are identifiers, integers, true and false.
+
+public class TreeDump {
+
+    public enum Format { TEXT, COMPACT }
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private TreeDump() {
+    }
+
+    public static void write(Program p, OutputStream out, Format format) throws IOException {
+        Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        write(p, w, format);
+    }
+
+    // Writes p to out and flushes it; out is not closed
+    public static void write(Program p, Writer out, Format format) throws IOException {
+        Writer w = out instanceof BufferedWriter ? out : new BufferedWriter(out, BUFFER_SIZE);
+        if (format == Format.TEXT)
+            p.display(w);
+        else
+            compact(p, w);
+        w.flush();
+    }
+
+    private static void compact(Program p, Writer w) throws IOException {
+        w.write("(program (declarations");
+        for (int i = 0; i < p.decpart.size(); i++) {
+            Declaration d = (Declaration) p.decpart.elementAt(i);
+            w.write(" (");
+            w.write(d.t.id);
+            w.write(' ');
+            w.write(d.v.id);
+            w.write(')');
+        }
+        w.write(") ");
+        statement(p.body, w);
+        w.write(")\n");
+    }
+
+    private static void statement(Statement s, Writer w) throws IOException {
+        if (s instanceof Block) {
+            Block b = (Block) s;
+            w.write("(block");
+            for (int i = 0; i < b.blockmembers.size(); i++) {
+                w.write(' ');
+                statement((Statement) b.blockmembers.elementAt(i), w);
+            }
+            w.write(')');
+        } else if (s instanceof Assignment) {
+            Assignment a = (Assignment) s;
+            w.write("(:= ");
+            w.write(a.target.id);
+            w.write(' ');
+            expression(a.source, w);
+            w.write(')');
+        } else if (s instanceof Conditional) {
+            Conditional c = (Conditional) s;
+            w.write("(if ");
+            expression(c.test, w);
+            w.write(' ');
+            statement(c.thenbranch, w);
+            if (c.elsebranch != null) {
+                w.write(' ');
+                statement(c.elsebranch, w);
+            }
+            w.write(')');
+        } else if (s instanceof Loop) {
+            Loop l = (Loop) s;
+            w.write("(while ");
+            expression(l.test, w);
+            w.write(' ');
+            statement(l.body, w);
+            w.write(')');
+        } else {
+            w.write("(skip)");
+        }
+    }
+
+    private static void expression(Expression e, Writer w) throws IOException {
+        if (e instanceof Variable) {
+            w.write(((Variable) e).id);
+        } else if (e instanceof Value) {
+            Value v = (Value) e;
+            if (v.type.isInteger())
+                w.write(Integer.toString(v.intValue));
+            else if (v.type.isBoolean())
+                w.write(v.boolValue ? "true" : "false");
+            else
+                w.write("undef");
+        } else if (e instanceof Binary) {
+            Binary b = (Binary) e;
+            w.write('(');
+            w.write(b.op.val);
+            w.write(' ');
+            expression(b.term1, w);
+            w.write(' ');
+            expression(b.term2, w);
+            w.write(')');
+        } else if (e instanceof Unary) {
+            Unary u = (Unary) e;
+            w.write('(');
+            w.write(u.op.val);
+            w.write(' ');
+            expression(u.term, w);
+            w.write(')');
+        }
+    }
+
+    // Usage: TreeDump [--compact] <in.kay> [out]   (stdout if out is omitted)
+    public static void main(String[] args) throws IOException {
+        Format format = Format.TEXT;
+        int i = 0;
+        if (i < args.length && args[i].equals("--compact")) {
+            format = Format.COMPACT;
+            i++;
+        }
+        if (i >= args.length) {
+            System.out.println("Usage: TreeDump [--compact] <in.kay> [out]");
+            return;
+        }
+        Program p = new ConcreteSyntax(new TokenStream(args[i])).program();
+        if (i + 1 < args.length) {
+            try (OutputStream out = new FileOutputStream(args[i + 1])) {
+                write(p, out, format);
+            }
+        } else {
+            write(p, System.out, format);
+        }
+    }
+}
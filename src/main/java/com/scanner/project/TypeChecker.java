@@ -0,0 +1,179 @@
+package com.scanner.project;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Static type checker for KAY programs
+//
+// The declarations are numbered as SlotLayout numbers them and one pass
+// over them fills an array indexed by that number with each variable's
+// type, then one pass over the body checks every node against it, so
+// checking is linear in the size of the tree and does no map lookups for
+// parsed programs. Nothing is sized by, read from or written to the
+// parser's symbol table, which may be shared with other parses.
+//
+// The rules: arithmetic operators take and give integers, < <= > >= take
+// integers and give bool, == and != take two operands of the same type,
+// && || and ! take and give bool, assignments need matching types and if
+// and while tests must be bool. An expression with an error in it gets no
+// type, so one mistake is not reported again by every enclosing node.
+// Errors of parsed programs start with the "file:line:col: " of the node.
+
+public class TypeChecker {
+    private static final byte UNDEFINED = 0;
+    private static final byte INTEGER = 1;
+    private static final byte BOOLEAN = 2;
+    private static final String[] NAMES = { Type.UNDEFINED, Type.INTEGER, Type.BOOLEAN };
+
+    private final Program program;
+    private final SlotLayout layout;
+    // Slot -> declared type, UNDEFINED until its declaration is checked
+    private final byte[] typeOf;
+    private final List<String> errors = new ArrayList<>();
+
+    private TypeChecker(Program p) {
+        program = p;
+        layout = new SlotLayout(p.decpart);
+        typeOf = new byte[layout.size()];
+    }
+
+    // The type errors of p, in source order; empty if p is well typed
+    public static List<String> check(Program p) {
+        TypeChecker c = new TypeChecker(p);
+        c.declarations(p.decpart);
+        c.statement(p.body);
+        return c.errors;
+    }
+
+    private void error(long span, String message) {
+        String location = program.location(span);
+        errors.add(location == null ? "Type error - " + message : location + ": Type error - " + message);
+    }
+
+    private void declarations(Declarations ds) {
+        for (int i = 0; i < ds.size(); i++) {
+            Declaration d = (Declaration) ds.elementAt(i);
+            // A name declared again maps to its first declaration's slot
+            int slot = layout.slot(d.v);
+            if (slot != i)
+                error(d.v.span, "Duplicate declaration: " + d.v.id);
+            else
+                typeOf[slot] = d.t.isBoolean() ? BOOLEAN : d.t.isInteger() ? INTEGER : UNDEFINED;
+        }
+    }
+
+    private void statement(Statement s) {
+        if (s instanceof Assignment) {
+            Assignment a = (Assignment) s;
+            byte target = variable(a.target);
+            byte source = expression(a.source);
+            if (target != UNDEFINED && source != UNDEFINED && target != source)
+                error(a.span, "Cannot assign " + NAMES[source] + " to " + NAMES[target] + " variable: " + a.target.id);
+        } else if (s instanceof Block) {
+            Block b = (Block) s;
+            for (int i = 0, n = b.blockmembers.size(); i < n; i++)
+                statement((Statement) b.blockmembers.elementAt(i));
+        } else if (s instanceof Conditional) {
+            Conditional c = (Conditional) s;
+            test("if", c.test);
+            statement(c.thenbranch);
+            if (c.elsebranch != null)
+                statement(c.elsebranch);
+        } else if (s instanceof Loop) {
+            Loop l = (Loop) s;
+            test("while", l.test);
+            statement(l.body);
+        }
+    }
+
+    private void test(String statement, Expression e) {
+        byte t = expression(e);
+        if (t != UNDEFINED && t != BOOLEAN)
+            error(e.span, "Test of " + statement + " must be bool, saw " + NAMES[t]);
+    }
+
+    private byte variable(Variable v) {
+        int slot = layout.slot(v);
+        byte t = slot < 0 ? UNDEFINED : typeOf[slot];
+        if (t == UNDEFINED)
+            error(v.span, "Undeclared variable: " + v.id);
+        return t;
+    }
+
+    private byte expression(Expression e) {
+        if (e instanceof Variable)
+            return variable((Variable) e);
+        if (e instanceof Value) {
+            Type t = ((Value) e).type;
+            return t.isBoolean() ? BOOLEAN : t.isInteger() ? INTEGER : UNDEFINED;
+        }
+        if (e instanceof Binary) {
+            Binary b = (Binary) e;
+            byte x = expression(b.term1);
+            byte y = expression(b.term2);
+            if (x == UNDEFINED || y == UNDEFINED)
+                return UNDEFINED;
+            switch (b.op.code) {
+                case Operator.OP_PLUS:
+                case Operator.OP_MINUS:
+                case Operator.OP_TIMES:
+                case Operator.OP_DIV:
+                    return operands(b, x, y, INTEGER, INTEGER);
+                case Operator.OP_LT:
+                case Operator.OP_LE:
+                case Operator.OP_GT:
+                case Operator.OP_GE:
+                    return operands(b, x, y, INTEGER, BOOLEAN);
+                case Operator.OP_AND:
+                case Operator.OP_OR:
+                    return operands(b, x, y, BOOLEAN, BOOLEAN);
+                case Operator.OP_EQ:
+                case Operator.OP_NE:
+                    if (x == y)
+                        return BOOLEAN;
+                    error(b.span, "Operator " + b.op.val + " expects operands of the same type, saw "
+                            + NAMES[x] + " and " + NAMES[y]);
+                    return UNDEFINED;
+                default:
+                    error(b.span, "Unknown operator: " + b.op.val);
+                    return UNDEFINED;
+            }
+        }
+        if (e instanceof Unary) {
+            Unary u = (Unary) e;
+            byte x = expression(u.term);
+            if (x == UNDEFINED)
+                return UNDEFINED;
+            byte expected = u.op.code == Operator.OP_NOT ? BOOLEAN : u.op.code == Operator.OP_MINUS ? INTEGER : UNDEFINED;
+            if (expected == UNDEFINED) {
+                error(u.span, "Unknown operator: " + u.op.val);
+                return UNDEFINED;
+            }
+            if (x == expected)
+                return x;
+            error(u.span, "Operator " + u.op.val + " expects " + NAMES[expected] + ", saw " + NAMES[x]);
+            return UNDEFINED;
+        }
+        return UNDEFINED;
+    }
+
+    private byte operands(Binary b, byte x, byte y, byte expected, byte result) {
+        if (x == expected && y == expected)
+            return result;
+        error(b.span, "Operator " + b.op.val + " expects " + NAMES[expected] + " operands, saw " + NAMES[x] + " and " + NAMES[y]);
+        return UNDEFINED;
+    }
+
+    // Usage: TypeChecker <program.kay>; prints each type error
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.out.println("Usage: TypeChecker <program.kay>");
+            return;
+        }
+        List<String> errors = check(new ConcreteSyntax(new TokenStream(args[0])).program());
+        for (String e : errors)
+            System.out.println(e);
+        if (errors.isEmpty())
+            System.out.println("No type errors");
+    }
+}
@@ -0,0 +1,101 @@
+package com.scanner.project;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class BatchParserTest {
+
+    private static final Path TESTS = Paths.get("src/test/java/com/scanner/project");
+
+    @Test
+    public void resultsComeBackInInputOrder() throws IOException {
+        List<Path> files = BatchParser.files(List.of(TESTS));
+        List<Path> listed;
+        try (Stream<Path> list = Files.list(TESTS)) {
+            listed = list.filter(f -> f.toString().endsWith(".kay")).sorted().collect(Collectors.toList());
+        }
+        assertEquals(listed, files);
+        List<BatchParser.Result> results = new BatchParser().parallelism(4).parse(files);
+        assertEquals(files.size(), results.size());
+        for (int i = 0; i < files.size(); i++) {
+            BatchParser.Result r = results.get(i);
+            assertEquals(files.get(i), r.path());
+            ParseResult expected = ConcreteSyntax.tryParse(new TokenStream(files.get(i).toString()));
+            assertEquals(expected.toString(), r.parse().toString(), files.get(i).toString());
+        }
+    }
+
+    @Test
+    public void smallMemoryBoundStillParsesEverything(@TempDir Path dir) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            Path f = dir.resolve(String.format("p%02d.kay", i));
+            Files.writeString(f, new KayGenerator(i).statements(50 + 40 * (i % 7)).invalidRate(0.002).generate());
+            files.add(f);
+        }
+        List<String> seen = new ArrayList<>();
+        BatchParser.Summary summary = new BatchParser().parallelism(3).maxBytesInFlight(4096)
+                .run(BatchParser.files(List.of(dir)), r -> seen.add(r.path().getFileName().toString()));
+        assertEquals(60, summary.files());
+        assertEquals(60, seen.size());
+        for (int i = 0; i < 60; i++)
+            assertEquals(String.format("p%02d.kay", i), seen.get(i));
+        long bytes = 0;
+        int failed = 0;
+        for (Path f : files) {
+            bytes += Files.size(f);
+            if (!ConcreteSyntax.tryParse(new TokenStream(f.toString())).ok())
+                failed++;
+        }
+        assertEquals(bytes, summary.bytes());
+        assertEquals(failed, summary.failed());
+        assertTrue(summary.toString().contains("60 files, " + failed + " failed"), summary.toString());
+    }
+
+    @Test
+    public void unreadableFilesAreReported() {
+        Path missing = TESTS.resolve("missing.kay");
+        List<BatchParser.Result> results = new BatchParser()
+                .parse(List.of(TESTS.resolve("ptest0.kay"), missing, TESTS.resolve("ptest3.kay")));
+        assertTrue(results.get(0).ok());
+        assertEquals(null, results.get(1).parse());
+        assertTrue(results.get(1).error() instanceof NoSuchFileException);
+        assertTrue(results.get(2).toString().startsWith("src/test/java/com/scanner/project/ptest3.kay:2:5: Syntax error"),
+                results.get(2).toString());
+    }
+
+    @Test
+    public void stackOverflowIsThatFilesResult(@TempDir Path dir) throws IOException {
+        int depth = 100000;
+        StringBuilder text = new StringBuilder("main { integer x; x := ");
+        for (int i = 0; i < depth; i++)
+            text.append('(');
+        text.append('1');
+        for (int i = 0; i < depth; i++)
+            text.append(')');
+        Path deep = dir.resolve("deep.kay");
+        Files.writeString(deep, text.append("; }"));
+        List<Path> files = List.of(TESTS.resolve("ptest0.kay"), deep, TESTS.resolve("ptest5.kay"));
+        List<BatchParser.Result> results = assertTimeoutPreemptively(Duration.ofSeconds(60),
+                () -> new BatchParser().parallelism(2).parse(files));
+        assertEquals(3, results.size());
+        assertTrue(results.get(0).ok());
+        assertTrue(results.get(1).error() instanceof StackOverflowError, results.get(1).toString());
+        assertTrue(results.get(2).ok());
+    }
+}
@@ -0,0 +1,140 @@
+package com.scanner.project;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class IncrementalParserTest {
+
+    private static final String[] INSERTS = {
+        "1", "x", " + 2", "*", ";", "}", "{", " ", "\n", "// c\n", "if", "q := 3;", "while (a < b) { }", "\u00e9",
+    };
+
+    private static void assertMatchesFreshParse(IncrementalParser in, String message) {
+        ParseResult fresh = ConcreteSyntax.tryParse(KaySource.of(in.text()));
+        assertEquals(fresh.toString(), in.result().toString(), message);
+        if (fresh.ok()) {
+            assertEquals(TreeSignature.of(fresh.program(), false), TreeSignature.of(in.program(), false), message);
+            assertEquals(fresh.program().location(fresh.program().body.span), in.program().location(in.program().body.span));
+        }
+    }
+
+    @Test
+    public void randomEditsMatchAFreshParse() {
+        int incremental = 0;
+        for (long seed = 1; seed <= 20; seed++) {
+            Random random = new Random(seed);
+            IncrementalParser in = new IncrementalParser(new KayGenerator(seed).statements(40)
+                    .nesting((int) (seed % 3)).generate());
+            for (int step = 0; step < 60; step++) {
+                int size = in.size();
+                int offset = random.nextInt(size + 1);
+                int removed = random.nextInt(3) == 0 ? Math.min(size - offset, random.nextInt(4)) : 0;
+                // Keep edits off the middle of multi-byte characters
+                String text = in.text();
+                if (!text.chars().allMatch(c -> c < 0x80))
+                    break;
+                String inserted = removed > 0 && random.nextBoolean() ? "" : INSERTS[random.nextInt(INSERTS.length)];
+                String gone = text.substring(offset, offset + removed);
+                in.edit(offset, removed, inserted);
+                if (in.reparsed() >= 0)
+                    incremental++;
+                assertMatchesFreshParse(in, "seed " + seed + " step " + step);
+                // Undo edits that break the program, so most edits start
+                // from one that parses
+                if (!in.result().ok()) {
+                    in.edit(offset, inserted.length(), gone);
+                    assertMatchesFreshParse(in, "seed " + seed + " undo " + step);
+                }
+            }
+        }
+        assertTrue(incremental > 30, "incremental " + incremental);
+    }
+
+    @Test
+    public void manyEditsBeforeTheTreeIsRead() {
+        int incremental = 0;
+        for (long seed = 1; seed <= 10; seed++) {
+            Random random = new Random(seed);
+            IncrementalParser in = new IncrementalParser(new KayGenerator(seed).statements(40)
+                    .nesting((int) (seed % 3)).generate());
+            for (int step = 0; step < 300; step++) {
+                int size = in.size();
+                int offset = random.nextInt(size + 1);
+                String inserted = INSERTS[random.nextInt(INSERTS.length - 1)];
+                if (!in.edit(offset, 0, inserted))
+                    in.edit(offset, inserted.length(), "");
+                else if (in.reparsed() >= 0)
+                    incremental++;
+                if (step % 97 == 96)
+                    assertMatchesFreshParse(in, "seed " + seed + " step " + step);
+            }
+            assertMatchesFreshParse(in, "seed " + seed);
+        }
+        assertTrue(incremental > 50, "incremental " + incremental);
+
+        // More unread edits than are kept pending, before and after each other
+        IncrementalParser in = new IncrementalParser("main { integer a;\n a := 1;\n a := 2;\n a := 3; }");
+        for (int step = 0; step < 150; step++) {
+            String text = in.text();
+            int at = step % 2 == 0 ? text.indexOf(";", text.indexOf("a := 3")) : text.indexOf(";", text.indexOf("a := 1"));
+            in.edit(at, 0, step % 3 == 0 ? " + 0" : " ");
+            assertEquals(1, in.reparsed());
+        }
+        assertMatchesFreshParse(in, "unread edits");
+    }
+
+    @Test
+    public void editInsideOneStatementKeepsTheOthers() {
+        IncrementalParser in = new IncrementalParser(
+                "main { integer a, b;\n a := 1;\n while (a < 10) { a := a + 1; b := b + a; }\n b := 2; }");
+        Program p = in.program();
+        Statement first = (Statement) p.body.blockmembers.elementAt(0);
+        Loop loop = (Loop) p.body.blockmembers.elementAt(1);
+        Statement last = (Statement) p.body.blockmembers.elementAt(2);
+        Statement inner = (Statement) ((Block) loop.body).blockmembers.elementAt(0);
+
+        int at = in.text().indexOf("b + a");
+        in.edit(at + 4, 1, "(a * 2)");
+        assertEquals(1, in.reparsed());
+        assertSame(p, in.program());
+        assertSame(first, p.body.blockmembers.elementAt(0));
+        assertSame(loop, p.body.blockmembers.elementAt(1));
+        assertSame(last, p.body.blockmembers.elementAt(2));
+        assertSame(inner, ((Block) loop.body).blockmembers.elementAt(0));
+        assertNotSame(inner, ((Block) loop.body).blockmembers.elementAt(1));
+        assertMatchesFreshParse(in, "nested edit");
+
+        // One statement becomes two
+        at = in.text().indexOf("b := 2;");
+        in.edit(at + 5, 0, "3; a := 4");
+        assertEquals(2, in.reparsed());
+        assertEquals(4, p.body.blockmembers.size());
+        assertMatchesFreshParse(in, "split");
+    }
+
+    @Test
+    public void errorsAndFallbacks() {
+        IncrementalParser in = new IncrementalParser("main { integer a;\n a := 1;\n a := 2; }");
+        // Across two statements: a full parse, here failing
+        in.edit(in.text().indexOf("1;"), 6, "3");
+        assertEquals(-1, in.reparsed());
+        assertEquals("2:8: Syntax error - Expecting: ; But saw: Operator = :=", in.result().toString());
+        assertEquals(null, in.program());
+        assertMatchesFreshParse(in, "across");
+
+        // Edits after an error parse everything until the source is fixed
+        in.edit(in.text().indexOf(":= 2"), 0, "; a ");
+        assertEquals(-1, in.reparsed());
+        assertTrue(in.result().ok());
+        assertMatchesFreshParse(in, "fixed");
+        in.edit(in.text().indexOf("3"), 1, "4");
+        assertEquals(1, in.reparsed());
+        assertMatchesFreshParse(in, "incremental again");
+    }
+}
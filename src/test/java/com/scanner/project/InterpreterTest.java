@@ -0,0 +1,57 @@
+package com.scanner.project;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class InterpreterTest {
+
+    private Interpreter run(String source) {
+        Interpreter in = new Interpreter(KayPrograms.parse(source));
+        in.run();
+        return in;
+    }
+
+    @Test
+    public void whileLoopCounts() {
+        Interpreter in = new Interpreter(new ConcreteSyntax(
+                new TokenStream("src/test/java/com/scanner/project/ptest7.kay")).program());
+        in.run();
+        assertEquals(10, in.intValue("i"));
+        assertEquals(10, in.intValue("n"));
+    }
+
+    @Test
+    public void arithmeticAndBooleans() {
+        Interpreter in = run("main { integer a, b, c; bool p, q;"
+                + " a := 17; b := a / 5; c := (a - b) * 2;"
+                + " p := (a > b) && (c == 28); q := (p != True) || False;"
+                + " if (p) { a := 1; } else { a := 2; } }");
+        assertEquals(1, in.intValue("a"));
+        assertEquals(3, in.intValue("b"));
+        assertEquals(28, in.intValue("c"));
+        assertTrue(in.boolValue("p"));
+        assertFalse(in.boolValue("q"));
+        assertEquals("a = 1\nb = 3\nc = 28\np = true\nq = false\n", in.state());
+    }
+
+    @Test
+    public void identifiersAreCaseInsensitive() {
+        Interpreter in = run("main { integer Total; total := 4; TOTAL := total * total; }");
+        assertEquals(16, in.intValue("total"));
+    }
+
+    @Test
+    public void divisionByZeroFails() {
+        assertThrows(ArithmeticException.class, () -> run("main { integer a; a := 1 / a; }"));
+    }
+
+    @Test
+    public void undeclaredVariableFails() {
+        RuntimeException e = assertThrows(RuntimeException.class, () -> run("main { integer a; b := a; }"));
+        assertEquals("Runtime error - Undeclared variable: b", e.getMessage());
+    }
+}
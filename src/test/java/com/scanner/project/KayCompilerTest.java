@@ -0,0 +1,85 @@
+package com.scanner.project;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+public class KayCompilerTest {
+
+    @Test
+    public void matchesInterpreterOnGeneratedPrograms() {
+        KayPrograms.assertMatchInterpreter(p -> KayCompiler.compile(p).run());
+    }
+
+    @Test
+    public void matchesInterpreterOnSampleFile() {
+        Program p = new ConcreteSyntax(new TokenStream("src/test/java/com/scanner/project/ptest7.kay")).program();
+        CompiledProgram cp = KayCompiler.compile(p);
+        Interpreter in = new Interpreter(p);
+        in.run();
+        assertEquals(in.state(), cp.state(cp.run()));
+    }
+
+    @Test
+    public void operatorsAndConstants() {
+        Program p = KayPrograms.parse("main { integer a, b, c, d; bool p, q, r;"
+                + " a := 100000; b := 0 - a / 7; c := (a - b) * 300; d := 0 - c;"
+                + " p := (a > b) && (c == 34285500); q := (p != True) || False; r := q == False;"
+                + " if (a <= b) { a := 1; } else { a := 2; }"
+                + " while (b < 0) { b := b + 5000; } }");
+        CompiledProgram cp = KayCompiler.compile(p);
+        int[] slots = cp.run();
+        assertArrayEquals(KayPrograms.interpret(p), slots);
+        assertEquals("a = 2\nb = 715\nc = 34285500\nd = -34285500\np = true\nq = false\nr = true\n",
+                cp.state(slots));
+    }
+
+    @Test
+    public void runsOnGivenState() {
+        CompiledProgram cp = KayCompiler.compile(KayPrograms.parse(
+                "main { integer i, n, s; while (i < n) { s := s + i; i := i + 1; } }"));
+        int[] slots = { 0, 10, 0 };
+        cp.run(slots);
+        assertArrayEquals(new int[] { 10, 10, 45 }, slots);
+    }
+
+    @Test
+    public void manyVariablesUseWideLocals() {
+        StringBuilder sb = new StringBuilder("main { integer v0");
+        for (int i = 1; i < 300; i++)
+            sb.append(", v").append(i);
+        sb.append("; v0 := 1;");
+        for (int i = 1; i < 300; i++)
+            sb.append(" v").append(i).append(" := v").append(i - 1).append(" + ").append(i).append(';');
+        sb.append(" }");
+        Program p = KayPrograms.parse(sb.toString());
+        assertArrayEquals(KayPrograms.interpret(p), KayCompiler.compile(p).run());
+    }
+
+    @Test
+    public void divisionByZeroFails() {
+        CompiledProgram cp = KayCompiler.compile(KayPrograms.parse("main { integer a, b; b := 2; a := 1 / a; }"));
+        int[] slots = new int[2];
+        assertThrows(ArithmeticException.class, () -> cp.run(slots));
+        assertArrayEquals(new int[] { 0, 2 }, slots);
+    }
+
+    @Test
+    public void undeclaredVariableFailsWhenReached() {
+        CompiledProgram cp = KayCompiler.compile(KayPrograms.parse(
+                "main { integer a; if (a > 0) { c := 1; } a := 1; b := a; }"));
+        int[] slots = new int[1];
+        RuntimeException e = assertThrows(RuntimeException.class, () -> cp.run(slots));
+        assertEquals("Runtime error - Undeclared variable: b", e.getMessage());
+        assertArrayEquals(new int[] { 1 }, slots);
+    }
+
+    @Test
+    public void oversizedProgramIsRejected() {
+        Program p = KayPrograms.parse(new KayGenerator(7).nesting(0).statements(20000).generate());
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> KayCompiler.compile(p));
+        assertEquals(true, e.getMessage().startsWith("Compile error - Program too large"));
+    }
+}
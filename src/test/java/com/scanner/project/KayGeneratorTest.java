@@ -0,0 +1,70 @@
+package com.scanner.project;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+
+public class KayGeneratorTest {
+
+    @Test
+    public void generatedProgramsParse() {
+        for (long seed = 1; seed <= 20; seed++) {
+            KayGenerator g = new KayGenerator(seed).statements(50).nesting(3).expressionDepth(4).commentDensity(0.3);
+            Program p = KayPrograms.parse(g.generate());
+            assertEquals(50, p.body.blockmembers.size() - countLoopResets(p));
+        }
+    }
+
+    @Test
+    public void sameSeedSameProgram() {
+        KayGenerator g = new KayGenerator(5).statements(30);
+        assertEquals(g.generate(), g.generate());
+    }
+
+    @Test
+    public void targetBytesBoundsTheOutput() {
+        String s = new KayGenerator(3).targetBytes(10_000).generate();
+        assertTrue(s.length() >= 10_000 && s.length() < 12_000, "length " + s.length());
+    }
+
+    @Test
+    public void invalidProgramsFailToParse() {
+        for (long seed = 1; seed <= 10; seed++) {
+            String source = new KayGenerator(seed).statements(100).invalidRate(0.2).generate();
+            assertThrows(RuntimeException.class, () -> KayPrograms.parse(source));
+        }
+    }
+
+    @Test
+    public void optionWithoutValueIsRejected() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(out, true, StandardCharsets.UTF_8));
+        try {
+            KayGenerator.main(new String[] { "--statements", "5", "--seed" });
+        } finally {
+            System.setOut(stdout);
+        }
+        assertEquals("Missing value for option: --seed" + System.lineSeparator(), out.toString(StandardCharsets.UTF_8));
+        assertFalse(Files.exists(Path.of("--seed")));
+    }
+
+    // Each top-level loop is preceded by an assignment resetting its counter
+    private int countLoopResets(Program p) {
+        int n = 0;
+        for (Object s : p.body.blockmembers)
+            if (s instanceof Loop)
+                n++;
+        return n;
+    }
+}
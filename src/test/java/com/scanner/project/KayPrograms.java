@@ -0,0 +1,51 @@
+package com.scanner.project;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
+
+// Programs for the back-end tests: a fail-fast parse of a source, the
+// Interpreter's final state as the reference result, and the generated
+// programs every back end is checked against it on
+
+final class KayPrograms {
+    // Number of generated programs, seeds 1 to GENERATED
+    static final int GENERATED = 200;
+
+    private KayPrograms() {
+    }
+
+    static Program parse(String source) {
+        TokenStream ts = new TokenStream(ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8)));
+        return new ConcreteSyntax(ts).program();
+    }
+
+    // The Interpreter's final slots for p
+    static int[] interpret(Program p) {
+        Interpreter in = new Interpreter(p);
+        in.run();
+        return in.slots();
+    }
+
+    // Generated program seed: 2 to 13 declarations, 40 statements,
+    // expressions 1 to 5 deep and nesting 0 to 3
+    static String generated(long seed) {
+        return new KayGenerator(seed)
+                .declarations(2 + (int) (seed % 12))
+                .statements(40)
+                .expressionDepth(1 + (int) (seed % 5))
+                .nesting((int) (seed % 4))
+                .generate();
+    }
+
+    // Asserts that run, given a parse of its own of each generated
+    // program, returns the slots the Interpreter ends with
+    static void assertMatchInterpreter(Function<Program, int[]> run) {
+        for (long seed = 1; seed <= GENERATED; seed++) {
+            String source = generated(seed);
+            assertArrayEquals(interpret(parse(source)), run.apply(parse(source)), "seed " + seed);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.scanner.project;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class KayVMTest {
+
+    @Test
+    public void matchesInterpreterOnGeneratedPrograms() {
+        KayPrograms.assertMatchInterpreter(p -> KayVM.run(Bytecode.lower(p)));
+    }
+
+    @Test
+    public void loweredCodeIsReusable() {
+        Bytecode b = Bytecode.lower(KayPrograms.parse(
+                "main { integer i, n, s; bool big; while (i < n) { s := s + i; i := i + 1; } big := s > 40; }"));
+        int[] slots = { 0, 10, 0, 0 };
+        KayVM.run(b, slots);
+        assertArrayEquals(new int[] { 10, 10, 45, 1 }, slots);
+        slots = new int[] { 0, 3, 0, 0 };
+        KayVM.run(b, slots);
+        assertEquals("i = 3\nn = 3\ns = 3\nbig = false\n", b.state(slots));
+    }
+
+    @Test
+    public void assignmentsWriteTheTargetRegister() {
+        // Three-address code: x := x + 1 is a single PLUS into x's register
+        Bytecode b = Bytecode.lower(KayPrograms.parse("main { integer x; x := x + 1; }"));
+        assertEquals(1, b.variables());
+        assertTrue(b.length() <= 8, "length " + b.length());
+    }
+
+    @Test
+    public void divisionByZeroFails() {
+        Bytecode b = Bytecode.lower(KayPrograms.parse("main { integer a, b; b := 2; a := 1 / a; }"));
+        int[] slots = new int[2];
+        assertThrows(ArithmeticException.class, () -> KayVM.run(b, slots));
+        assertArrayEquals(new int[] { 0, 2 }, slots);
+    }
+
+    @Test
+    public void undeclaredVariableFailsWhenReached() {
+        Bytecode b = Bytecode.lower(KayPrograms.parse(
+                "main { integer a; if (a > 0) { c := 1; } a := 1; b := a; }"));
+        RuntimeException e = assertThrows(RuntimeException.class, () -> KayVM.run(b));
+        assertEquals("Runtime error - Undeclared variable: b", e.getMessage());
+    }
+}
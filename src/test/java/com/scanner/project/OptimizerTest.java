@@ -0,0 +1,70 @@
+package com.scanner.project;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.jupiter.api.Test;
+
+public class OptimizerTest {
+
+    private static String optimized(String source) throws IOException {
+        Program p = KayPrograms.parse(source);
+        Optimizer.optimize(p);
+        StringWriter w = new StringWriter();
+        TreeDump.write(p, w, TreeDump.Format.COMPACT);
+        return w.toString();
+    }
+
+    @Test
+    public void foldsConstantsAndIdentities() throws IOException {
+        assertEquals("(program (declarations (integer x) (integer y)) (block (:= y (+ 12 x)) (:= x y)))\n",
+                optimized("main { integer x, y; y := (3 * 4) + (x * 1); x := (y + 0) / 1; }"));
+    }
+
+    @Test
+    public void reportsRemovedNodes() {
+        Program p = KayPrograms.parse("main { integer x; x := (3 * 4) + (x * 1); }");
+        // (3 * 4) -> 12 removes two nodes, (x * 1) -> x removes two more
+        assertEquals(4, Optimizer.optimize(p));
+        assertEquals(0, Optimizer.optimize(p));
+    }
+
+    @Test
+    public void removesConstantConditionalsAndLoops() throws IOException {
+        assertEquals("(program (declarations (integer x)) (block (:= x 1) (:= x 3)))\n",
+                optimized("main { integer x; if (True) { x := 1; } else { x := 2; }"
+                        + " while (1 > 2) { x := x + 1; } if (False) { x := 2; } else { x := 3; } }"));
+    }
+
+    @Test
+    public void booleanIdentitiesNeedBooleanOperands() throws IOException {
+        assertEquals("(program (declarations (bool b) (integer x) (bool c))"
+                        + " (block (:= b (< x 1)) (:= c b) (:= c (&& true x)) (:= c false)))\n",
+                optimized("main { bool b; integer x; bool c; b := x < 1; c := True && b;"
+                        + " c := True && x; c := False && (x < 2); }"));
+    }
+
+    @Test
+    public void keepsDivisionByZeroAndUnsafeOperands() throws IOException {
+        assertEquals("(program (declarations (integer x)) (block (:= x (/ 1 0)) (:= x (* (/ x 0) 0))"
+                        + " (:= x (* y 0))))\n",
+                optimized("main { integer x; x := 1 / 0; x := (x / 0) * 0; x := y * 0; }"));
+        Program p = KayPrograms.parse("main { integer x; x := (x / 0) * 0; }");
+        Optimizer.optimize(p);
+        assertThrows(ArithmeticException.class, () -> new Interpreter(p).run());
+    }
+
+    @Test
+    public void preservesResultsOfGeneratedPrograms() {
+        int[] removed = { 0 };
+        KayPrograms.assertMatchInterpreter(p -> {
+            removed[0] += Optimizer.optimize(p);
+            return KayPrograms.interpret(p);
+        });
+        assertTrue(removed[0] > 0);
+    }
+}
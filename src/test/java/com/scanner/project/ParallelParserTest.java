@@ -0,0 +1,74 @@
+package com.scanner.project;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+public class ParallelParserTest {
+
+    private static void assertSameParse(Program expected, Program actual) {
+        assertEquals(TreeSignature.of(expected, true), TreeSignature.of(actual, true));
+        // Every variable shares the declarations' table
+        SymbolTable table = ((Declaration) actual.decpart.elementAt(0)).v.symbol.table;
+        assertEquals(expected.body.blockmembers.size(), actual.body.blockmembers.size());
+        Statement last = (Statement) actual.body.blockmembers.lastElement();
+        if (last instanceof Assignment)
+            assertSame(table, ((Assignment) last).target.symbol.table);
+    }
+
+    private static KaySource big(long seed, double invalidRate) {
+        return KaySource.of(new KayGenerator(seed).declarations(30).targetBytes(400 << 10)
+                .nesting((int) (seed % 4)).commentDensity(0.1).invalidRate(invalidRate).generate());
+    }
+
+    @Test
+    public void matchesTheSequentialParse() {
+        for (long seed = 1; seed <= 6; seed++) {
+            KaySource source = big(seed, 0);
+            // Splitting from just inside main { also cuts between declarations
+            int open = StandardCharsets.UTF_8.decode(source.bytes()).toString().indexOf('{') + 1;
+            int[] splits = ParallelParser.split(source.bytes(), open, source.size(), 16);
+            assertTrue(splits != null && splits.length > 3, "seed " + seed);
+            assertSameParse(new ConcreteSyntax(source).program(), ParallelParser.parse(source, 4));
+        }
+    }
+
+    @Test
+    public void errorsMatchTheSequentialParse() {
+        for (long seed = 1; seed <= 6; seed++) {
+            KaySource source = big(seed, 0.0005);
+            KaySyntaxException expected = assertThrows(KaySyntaxException.class,
+                    () -> new ConcreteSyntax(source).program());
+            KaySyntaxException actual = assertThrows(KaySyntaxException.class,
+                    () -> ParallelParser.parse(source, 4));
+            assertEquals(expected.getLocalizedMessage(), actual.getLocalizedMessage(), "seed " + seed);
+        }
+    }
+
+    @Test
+    public void elseIsNeverSplitFromItsIf() {
+        StringBuilder sb = new StringBuilder("main { integer x;\n");
+        for (int i = 0; i < 20000; i++)
+            sb.append("if (x < ").append(i).append(") { x := x + 1; }\n  // elsewhere\n else { x := 0; }\n");
+        sb.append("}");
+        KaySource source = KaySource.of(sb);
+        assertSameParse(new ConcreteSyntax(source).program(), ParallelParser.parse(source, 4));
+    }
+
+    @Test
+    public void splitsOnlyAtTopLevelStatementEnds() {
+        String text = "a := 1; while (a < 2) { b := 3; } c := 4; } d := 5;";
+        ByteBuffer b = ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII));
+        int[] splits = ParallelParser.split(b, 0, b.limit(), 1000);
+        // One chunk: the minimum chunk size is far above this program
+        assertEquals(2, splits.length);
+        assertEquals(text.indexOf("} d"), splits[1]);
+        assertEquals(null, ParallelParser.split(b, 0, text.indexOf("} d"), 10));
+    }
+}
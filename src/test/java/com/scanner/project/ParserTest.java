@@ -1,9 +1,25 @@
 package com.scanner.project;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.ArrayList;
+
 import org.junit.jupiter.api.Test;
 
 public class ParserTest {
@@ -124,4 +140,288 @@ public class ParserTest {
             assertEquals("Syntax error - Expecting: ( But saw: Separator = {", e.getMessage());
         }
     }
+
+    @Test
+    public void textDumpMatchesDisplay() throws IOException {
+        Program p = setup(6);
+        StringWriter out = new StringWriter();
+        TreeDump.write(p, out, TreeDump.Format.TEXT);
+        assertEquals(p.display(), out.toString());
+    }
+
+    @Test
+    public void compactDump() throws IOException {
+        StringWriter out = new StringWriter();
+        TreeDump.write(setup(7), out, TreeDump.Format.COMPACT);
+        assertEquals("(program (declarations (integer i) (integer n)) (block (:= n 10)"
+                + " (while (< i n) (block (:= i (+ i 1))))))\n", out.toString());
+    }
+
+    @Test
+    public void syntaxErrorsKnowTheirPosition() {
+        KaySyntaxException e = assertThrows(KaySyntaxException.class, () -> setup(3));
+        assertEquals("Syntax error - Expecting: := But saw: Identifier = i", e.getMessage());
+        assertEquals(2, e.getLine());
+        assertEquals(5, e.getColumn());
+        assertEquals("src/test/java/com/scanner/project/ptest3.kay:2:5: "
+                + "Syntax error - Expecting: := But saw: Identifier = i", e.getLocalizedMessage());
+    }
+
+    @Test
+    public void nodesCarrySourceSpans() {
+        Program p = setup(7);
+        Statement loop = (Statement) p.body.blockmembers.elementAt(1);
+        assertEquals("src/test/java/com/scanner/project/ptest7.kay:5:1", p.location(loop.span));
+        Expression test = ((Loop) loop).test;
+        assertEquals(Span.start(test.span), Span.start(((Binary) test).term1.span));
+        assertEquals(Span.end(test.span), Span.end(((Binary) test).term2.span));
+    }
+
+    private static ConcreteSyntax recovering(String source) {
+        return new ConcreteSyntax(new TokenStream(ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8))), true);
+    }
+
+    private static String messages(List<Diagnostic> diagnostics) {
+        StringBuilder sb = new StringBuilder();
+        for (Diagnostic d : diagnostics)
+            sb.append(d).append('\n');
+        return sb.toString();
+    }
+
+    @Test
+    public void recoveryReportsEveryError() throws IOException {
+        ConcreteSyntax parser = recovering("main {\n"
+                + "  integer i, n;\n"
+                + "  integer j k;\n"
+                + "  i = 1;\n"
+                + "  n := 10\n"
+                + "  while (i < n {\n"
+                + "    i := i + 1;\n"
+                + "  }\n"
+                + "  if (i > 3) { i := ; j := 2; } else { 5 := i; }\n"
+                + "  j := i * 2;\n"
+                + "}\n");
+        Program p = parser.program();
+        assertEquals("3:13: Syntax error - Expecting: ; But saw: Identifier = k\n"
+                + "4:5: Syntax error - Expecting: := But saw: Other = =\n"
+                + "6:3: Syntax error - Expecting: ; But saw: Keyword = while\n"
+                + "6:16: Syntax error - Expecting: ) But saw: Separator = {\n"
+                + "9:21: Syntax error in factor - saw: Separator = ;\n"
+                + "9:40: Syntax error - Unexpected token in statement: Literal = 5\n",
+                messages(parser.diagnostics()));
+        StringWriter w = new StringWriter();
+        TreeDump.write(p, w, TreeDump.Format.COMPACT);
+        assertEquals("(program (declarations (integer i) (integer n) (integer j)) (block (:= n 10)"
+                + " (if (> i 3) (block (:= j 2)) (block)) (:= j (* i 2))))\n", w.toString());
+    }
+
+    @Test
+    public void recoveryAcceptsValidPrograms() {
+        for (int i : new int[] { 0, 5, 6, 7, 8 }) {
+            ConcreteSyntax parser = new ConcreteSyntax(
+                    new TokenStream("src/test/java/com/scanner/project/ptest" + i + ".kay"), true);
+            assertEquals(setup(i).display(), parser.program().display());
+            assertEquals(List.of(), parser.diagnostics());
+        }
+    }
+
+    @Test
+    public void recoveryFindsErrorsThroughoutLargeInputs() {
+        String source = new KayGenerator(3).nesting(0).statements(2000).invalidRate(0.02).generate();
+        // A missing ';' is assumed; after " = " the parser resumes past the
+        // next ';', which also swallows the statement that follows
+        int expected = 0;
+        String[] lines = source.split("\n");
+        for (int i = 0; i < lines.length; i++) {
+            if (lines[i].contains(" = ")) {
+                expected++;
+                while (++i < lines.length && !lines[i].endsWith(";"))
+                    ;
+            } else if (lines[i].contains(":=") && !lines[i].endsWith(";")) {
+                expected++;
+            }
+        }
+        ConcreteSyntax parser = recovering(source);
+        parser.program();
+        assertEquals(true, expected > 10);
+        assertEquals(expected, parser.diagnostics().size(), messages(parser.diagnostics()));
+    }
+
+    @Test
+    public void tryParseReturnsProgramOrDiagnostic() {
+        ParseResult ok = ConcreteSyntax.tryParse(new TokenStream("src/test/java/com/scanner/project/ptest7.kay"));
+        assertEquals(true, ok.ok());
+        assertEquals(setup(7).display(), ok.program().display());
+        assertEquals(null, ok.diagnostic());
+
+        ParseResult bad = ConcreteSyntax.tryParse(new TokenStream("src/test/java/com/scanner/project/ptest4.kay"));
+        assertEquals(false, bad.ok());
+        assertEquals(null, bad.program());
+        assertEquals("Syntax error - Expecting: := But saw: Other = =", bad.diagnostic().getMessage());
+        assertEquals("src/test/java/com/scanner/project/ptest4.kay", bad.diagnostic().getLocation().split(":")[0]);
+    }
+
+    @Test
+    public void syntaxErrorsHaveNoStackTrace() {
+        KaySyntaxException e = assertThrows(KaySyntaxException.class, () -> setup(1));
+        assertEquals(0, e.getStackTrace().length);
+        assertEquals("Syntax error - Expecting: main But saw: Identifier = void", e.getMessage());
+    }
+
+    @Test
+    public void syntaxErrorsSerializeWithTheirPosition() throws Exception {
+        KaySyntaxException e = assertThrows(KaySyntaxException.class, () -> setup(3));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(e);
+        }
+        KaySyntaxException copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (KaySyntaxException) in.readObject();
+        }
+        assertEquals(e.getLocalizedMessage(), copy.getLocalizedMessage());
+        assertEquals(e.getFile(), copy.getFile());
+        assertEquals(e.getOffset(), copy.getOffset());
+    }
+
+    @Test
+    public void resetParsesTheNextSource() {
+        ConcreteSyntax parser = new ConcreteSyntax(KaySource.of("main { integer x; x := 1; }"));
+        SymbolTable symbols = parser.input().symbols();
+        parser.program();
+        for (long seed = 1; seed <= 20; seed++) {
+            String source = new KayGenerator(seed).statements(10).generate();
+            ParseResult r = parser.parse(KaySource.of(source));
+            ParseResult fresh = ConcreteSyntax.tryParse(KaySource.of(source));
+            assertEquals(fresh.toString(), r.toString(), "seed " + seed);
+            if (r.ok())
+                assertEquals(fresh.program().display(), r.program().display(), "seed " + seed);
+        }
+        assertSame(symbols, parser.input().symbols());
+        assertEquals("2:5: Syntax error - Expecting: := But saw: Other = =",
+                parser.parse(KaySource.of("main {\n  x = 1; }")).toString());
+    }
+
+    @Test
+    public void poolReusesParsersAcrossThreads() throws Exception {
+        ParserPool pool = new ParserPool(4);
+        ParserPool.Lease first;
+        try (ParserPool.Lease parser = pool.acquire()) {
+            first = parser;
+            assertEquals(true, parser.parse("main { integer x; x := 1; }").ok());
+        }
+        assertEquals(1, pool.idle());
+        assertThrows(IllegalStateException.class, () -> first.parse("main { }"));
+        // A stale lease closed again does not return a parser in use
+        ParserPool.Lease second = pool.acquire();
+        assertEquals(0, pool.idle());
+        first.close();
+        assertEquals(0, pool.idle());
+        ParserPool.Lease third = pool.acquire();
+        assertNotSame(second, third);
+        second.close();
+        third.close();
+        assertEquals(2, pool.idle());
+        pool.acquire().close();
+        assertEquals(2, pool.idle());
+
+        // Results stay right after the lease's buffer is reused
+        ParseResult error;
+        Program program;
+        try (ParserPool.Lease parser = pool.acquire()) {
+            error = parser.parse("main {\n integer x;\n x := 1;\n    x = 2; }");
+        }
+        try (ParserPool.Lease parser = pool.acquire()) {
+            program = parser.parse("main { integer y;\n\n  y := 3; }").program();
+        }
+        try (ParserPool.Lease parser = pool.acquire()) {
+            parser.parse("main { integer zzzzzzzzzzzzzzzzzzzzzzzzzzzzzz; zzzzzzzzzzzzzzzzzzzzzzzzzzzzzz = 4; }");
+        }
+        assertEquals("4:7: Syntax error - Expecting: := But saw: Other = =", error.toString());
+        assertEquals(4, error.diagnostic().getLine());
+        Statement assignment = (Statement) program.body.blockmembers.elementAt(0);
+        assertEquals("3:3", program.location(assignment.span));
+
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (long seed = 1; seed <= 40; seed++) {
+                String source = new KayGenerator(seed).statements(20).generate();
+                results.add(threads.submit(() -> {
+                    try (ParserPool.Lease parser = pool.acquire()) {
+                        ParseResult r = parser.parse(source);
+                        return r.ok() ? r.program().display() : r.toString();
+                    }
+                }));
+            }
+            for (long seed = 1; seed <= 40; seed++) {
+                ParseResult r = ConcreteSyntax.tryParse(KaySource.of(new KayGenerator(seed).statements(20).generate()));
+                assertEquals(r.ok() ? r.program().display() : r.toString(), results.get((int) seed - 1).get(), "seed " + seed);
+            }
+        } finally {
+            threads.shutdown();
+        }
+        assertEquals(true, pool.idle() <= 4);
+    }
+
+    @Test
+    public void leasedResultsOwnTheirSymbolTable() throws Exception {
+        ParserPool pool = new ParserPool(1);
+        String[] sources = new String[2];
+        List<List<String>> expected = new ArrayList<>();
+        for (int k = 0; k < 2; k++) {
+            String v = k == 0 ? "a" : "b";
+            StringBuilder sb = new StringBuilder("main { integer ").append(v).append(0);
+            for (int i = 1; i < 3000; i++)
+                sb.append(", ").append(v).append(i);
+            sb.append(";\n bool \u00e9; \u00e9 := ").append(v).append("1 < 2; ").append(v).append("2 := true; }");
+            sources[k] = sb.toString();
+            expected.add(TypeChecker.check(ConcreteSyntax.tryParse(KaySource.of(sources[k])).program()));
+        }
+        assertEquals(1, expected.get(0).size());
+
+        // The next lease of the same parser leaves an earlier table alone
+        SymbolTable table;
+        try (ParserPool.Lease parser = pool.acquire()) {
+            Program p = parser.parse("main { integer x; x := 1; }").program();
+            table = ((Declaration) p.decpart.elementAt(0)).v.symbol.table;
+        }
+        int size = table.size();
+        try (ParserPool.Lease parser = pool.acquire()) {
+            parser.parse("main { integer y, z; y := 1; }");
+        }
+        assertEquals(size, table.size());
+
+        // Each round hands the one pooled parser to the other thread while
+        // this one type-checks what it parsed
+        ExecutorService threads = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<Program>> results = new ArrayList<>();
+            for (int k = 0; k < 2; k++) {
+                int which = k;
+                results.add(threads.submit(() -> {
+                    Program p = null;
+                    for (int round = 0; round < 30; round++) {
+                        try (ParserPool.Lease parser = pool.acquire()) {
+                            p = parser.parse(sources[which]).program();
+                        }
+                        assertEquals(expected.get(which), TypeChecker.check(p), "round " + round);
+                    }
+                    return p;
+                }));
+            }
+            Program first = results.get(0).get();
+            Program second = results.get(1).get();
+            assertEquals(expected.get(0), TypeChecker.check(first));
+            assertEquals(expected.get(1), TypeChecker.check(second));
+            Symbol a = ((Declaration) first.decpart.elementAt(0)).v.symbol;
+            Symbol b = ((Declaration) second.decpart.elementAt(0)).v.symbol;
+            assertNotSame(a.table, b.table);
+            // Columns after a multi-byte name, without the source bytes
+            Statement assignment = (Statement) first.body.blockmembers.elementAt(1);
+            assertEquals("2:23", first.location(assignment.span));
+        } finally {
+            threads.shutdown();
+        }
+    }
 }
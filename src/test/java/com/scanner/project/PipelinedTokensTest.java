@@ -0,0 +1,65 @@
+package com.scanner.project;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+public class PipelinedTokensTest {
+
+    @Test
+    public void deliversTheTokensOfATokenStream() {
+        for (long seed = 1; seed <= 10; seed++) {
+            KaySource source = KaySource.of(new KayGenerator(seed).statements(300).commentDensity(0.2).generate());
+            TokenStream expected = new TokenStream(source);
+            // A small ring, so the scanner keeps waiting for the parser
+            try (PipelinedTokens actual = new PipelinedTokens(source, 128)) {
+                do {
+                    expected.advance();
+                    assertEquals(expected.kind(), actual.advance(), "seed " + seed);
+                    assertEquals(expected.terminal(), actual.terminal());
+                    assertEquals(expected.start(), actual.start());
+                    assertEquals(expected.end(), actual.end());
+                    assertEquals(expected.intValue(), actual.intValue());
+                    assertEquals(expected.text(), actual.text());
+                } while (expected.kind() != TokenKind.EOF);
+                assertEquals(TokenKind.EOF, actual.advance());
+            }
+        }
+    }
+
+    @Test
+    public void parsesLikeTheSequentialParser() {
+        KaySource source = KaySource.of(new KayGenerator(7).targetBytes(200 << 10).nesting(3).generate());
+        Program expected = new ConcreteSyntax(source).program();
+        Program actual = ConcreteSyntax.pipelined(source);
+        assertEquals(expected.display(), actual.display());
+        assertEquals(expected.body.span, actual.body.span);
+        assertEquals(expected.location(expected.body.span), actual.location(actual.body.span));
+    }
+
+    @Test
+    public void scanErrorsReachTheParserThread() {
+        String text = "main { integer x;\n x := 1;\n x := 99999999999; }";
+        KaySyntaxException expected = assertThrows(KaySyntaxException.class,
+                () -> new ConcreteSyntax(KaySource.of(text)).program());
+        KaySyntaxException actual = assertThrows(KaySyntaxException.class,
+                () -> ConcreteSyntax.pipelined(KaySource.of(text)));
+        assertEquals(expected.getLocalizedMessage(), actual.getLocalizedMessage());
+        assertEquals("3:7", actual.getLocation());
+    }
+
+    @Test
+    public void closeStopsTheScannerAfterAnEarlyError() {
+        StringBuilder text = new StringBuilder("main { integer x; x = 1;");
+        for (int i = 0; i < 100000; i++)
+            text.append(" x := 1;");
+        KaySource source = KaySource.of(text.append(" }"));
+        PipelinedTokens tokens = new PipelinedTokens(source, 128);
+        ParseResult r = ConcreteSyntax.tryParse(tokens);
+        assertEquals("1:21: Syntax error - Expecting: := But saw: Other = =", r.toString());
+        tokens.close();
+        // A second close is harmless
+        tokens.close();
+    }
+}
@@ -0,0 +1,142 @@
+package com.scanner.project;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TokenCacheTest {
+    private static final Path TESTS = Paths.get("src/test/java/com/scanner/project");
+
+    private static String signature(ParseResult r) {
+        if (r.program() == null)
+            return r.toString();
+        return TreeSignature.of(r.program(), true) + r.program().location(r.program().body.span);
+    }
+
+    private static void assertSameParse(KaySource source) {
+        ParseResult expected = ConcreteSyntax.tryParse(new TokenStream(source));
+        ParseResult actual = ConcreteSyntax.tryParse(TokenArray.tokenize(source).cursor(source));
+        assertEquals(signature(expected), signature(actual), source.name());
+    }
+
+    private static TokenArray roundTrip(TokenArray tokens) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        tokens.write(Channels.newChannel(out));
+        byte[] bytes = out.toByteArray();
+        return TokenArray.read(Channels.newChannel(new ByteArrayInputStream(bytes)), bytes.length);
+    }
+
+    @Test
+    public void parsesLikeTheScanner() throws IOException {
+        try (Stream<Path> files = Files.list(TESTS)) {
+            for (Path f : (Iterable<Path>) files.filter(p -> p.toString().endsWith(".kay")).sorted()::iterator)
+                assertSameParse(KaySource.file(f));
+        }
+        for (long seed = 1; seed <= 5; seed++)
+            assertSameParse(KaySource.of(new KayGenerator(seed).statements(300).nesting(3).commentDensity(0.2).generate()));
+    }
+
+    @Test
+    public void scanErrorsComeAfterEarlierSyntaxErrors() {
+        // A syntax error before the bad literal wins, as with TokenStream
+        assertSameParse(KaySource.of("main { integer x;\n x = 1;\n x := 99999999999; }"));
+        assertSameParse(KaySource.of("main { integer x;\n x := 1;\n x := 99999999999; }"));
+        assertSameParse(KaySource.of("main { integer x;\n x := 1 # 2; }"));
+        KaySource source = KaySource.of("main { integer x;\n x := 1;\n x := 99999999999; }");
+        KaySyntaxException e = assertThrows(KaySyntaxException.class,
+                () -> new ConcreteSyntax(TokenArray.tokenize(source).cursor(source)).program());
+        assertEquals("3:7", e.getLocation());
+    }
+
+    @Test
+    public void writeAndReadRoundTrip() throws IOException {
+        KaySource source = KaySource.of(new KayGenerator(3).statements(200).generate());
+        TokenArray tokens = TokenArray.tokenize(source);
+        TokenArray copy = roundTrip(tokens);
+        assertEquals(tokens.size(), copy.size());
+        assertEquals(tokens.sourceSize(), copy.sourceSize());
+        assertArrayEquals(tokens.sourceDigest(), copy.sourceDigest());
+        assertEquals(signature(ConcreteSyntax.tryParse(tokens.cursor(source))),
+                signature(ConcreteSyntax.tryParse(copy.cursor(source))));
+
+        KaySource bad = KaySource.of("main { integer x; x := 99999999999; }");
+        assertEquals(signature(ConcreteSyntax.tryParse(new TokenStream(bad))),
+                signature(ConcreteSyntax.tryParse(roundTrip(TokenArray.tokenize(bad)).cursor(bad))));
+    }
+
+    @Test
+    public void readRejectsOtherData() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TokenArray.tokenize(KaySource.of("main { integer x; x := 1; }")).write(Channels.newChannel(out));
+        byte[] bytes = out.toByteArray();
+
+        byte[] version = bytes.clone();
+        ByteBuffer.wrap(version).putInt(4, TokenArray.VERSION + 1);
+        byte[] grammar = bytes.clone();
+        ByteBuffer.wrap(grammar).putLong(8, TokenArray.GRAMMAR + 1);
+        byte[] offset = bytes.clone();
+        // The first offset now points past the end of the source
+        ByteBuffer.wrap(offset).putInt(60 + 4 * ByteBuffer.wrap(bytes).getInt(56), 1 << 20);
+        for (byte[] b : new byte[][] { new byte[30], version, grammar, offset, Arrays.copyOf(bytes, bytes.length - 3) })
+            assertThrows(IOException.class,
+                    () -> TokenArray.read(Channels.newChannel(new ByteArrayInputStream(b)), b.length));
+    }
+
+    @Test
+    public void missThenHit(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("p.kay");
+        Files.writeString(file, new KayGenerator(5).statements(100).generate());
+        TokenCache cache = new TokenCache(dir.resolve("cache"));
+        String expected = signature(ConcreteSyntax.tryParse(KaySource.file(file)));
+
+        assertEquals(expected, signature(cache.tryParse(file)));
+        assertEquals(0, cache.hits());
+        assertEquals(1, cache.misses());
+        assertEquals(expected, signature(cache.tryParse(file)));
+        assertEquals(1, cache.hits());
+        try (Stream<Path> entries = Files.list(dir.resolve("cache"))) {
+            assertEquals(1, entries.count());
+        }
+
+        // A changed source has another key
+        Files.writeString(file, "main { integer x; x := 2; }");
+        assertEquals(signature(ConcreteSyntax.tryParse(KaySource.file(file))), signature(cache.tryParse(file)));
+        assertEquals(2, cache.misses());
+        // Even at the same size
+        Files.writeString(file, "main { integer y; y := 2; }");
+        assertEquals(signature(ConcreteSyntax.tryParse(KaySource.file(file))), signature(cache.tryParse(file)));
+        assertEquals(3, cache.misses());
+    }
+
+    @Test
+    public void corruptEntriesAreMisses(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("p.kay");
+        Files.writeString(file, "main { integer x; x := 1; }");
+        TokenCache cache = new TokenCache(dir.resolve("cache"));
+        cache.tryParse(file);
+        Path entry;
+        try (Stream<Path> entries = Files.list(dir.resolve("cache"))) {
+            entry = entries.findFirst().orElseThrow();
+        }
+        Files.write(entry, new byte[] { 1, 2, 3 });
+        assertEquals(signature(ConcreteSyntax.tryParse(KaySource.file(file))), signature(cache.tryParse(file)));
+        assertEquals(2, cache.misses());
+        // Written again, so the next parse hits
+        cache.tryParse(file);
+        assertEquals(1, cache.hits());
+    }
+}
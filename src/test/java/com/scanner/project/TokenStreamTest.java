@@ -0,0 +1,231 @@
+package com.scanner.project;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TokenStreamTest {
+
+    private TokenStream scan(String source) {
+        return new TokenStream(ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void cursorReportsKindsAndOffsets() {
+        TokenStream ts = scan("x1 := 42 // note\n<= &= if");
+
+        assertEquals(TokenKind.IDENTIFIER, ts.advance());
+        assertEquals(0, ts.start());
+        assertEquals(2, ts.end());
+        assertEquals("x1", ts.text());
+
+        assertEquals(TokenKind.OPERATOR, ts.advance());
+        assertEquals(Terminal.ASSIGN, ts.terminal());
+
+        assertEquals(TokenKind.LITERAL, ts.advance());
+        assertEquals(42, ts.intValue());
+        assertEquals(6, ts.start());
+        assertEquals(8, ts.end());
+
+        assertEquals(TokenKind.OPERATOR, ts.advance());
+        assertEquals(Terminal.LE, ts.terminal());
+
+        assertEquals(TokenKind.OTHER, ts.advance());
+        assertNull(ts.terminal());
+        assertEquals("&=", ts.text());
+
+        assertEquals(TokenKind.KEYWORD, ts.advance());
+        assertEquals(Terminal.IF, ts.terminal());
+
+        assertEquals(TokenKind.EOF, ts.advance());
+        assertEquals(TokenKind.EOF, ts.advance());
+    }
+
+    @Test
+    public void nextTokenKeepsStringTypesAndValues() {
+        TokenStream ts = scan("main{ b := True; }");
+        String[] expected = { "Keyword main", "Separator {", "Identifier b", "Operator :=",
+                "Keyword True", "Separator ;", "Separator }", "EOF " };
+        for (String e : expected) {
+            Token t = ts.nextToken();
+            assertEquals(e, t.getType() + " " + t.getValue());
+        }
+    }
+
+    @Test
+    public void nonAsciiLettersFormIdentifiers() {
+        TokenStream ts = scan("caf\u00e9 := 1;");
+        assertEquals(TokenKind.IDENTIFIER, ts.advance());
+        assertEquals("caf\u00e9", ts.text());
+        assertEquals(5, ts.end());
+    }
+
+    @Test
+    public void identifiersShareInternedSymbols() {
+        TokenStream ts = scan("i j i I");
+        ts.advance();
+        Symbol i = ts.symbol();
+        ts.advance();
+        Symbol j = ts.symbol();
+        ts.advance();
+        assertSame(i, ts.symbol());
+        ts.advance();
+        Symbol upper = ts.symbol();
+
+        assertEquals("I", upper.name);
+        assertEquals(i.id, upper.id);
+        assertNotEquals(i.id, j.id);
+        assertEquals(2, ts.symbols().size());
+    }
+
+    @Test
+    public void literalsCarryTheirValue() {
+        TokenStream ts = scan("0 2147483647 2147483648");
+        ts.advance();
+        assertEquals(0, ts.intValue());
+        assertEquals(2147483647, ts.nextToken().getIntValue());
+        RuntimeException e = assertThrows(RuntimeException.class, ts::advance);
+        assertEquals("Scan error - Integer literal out of range at offset 13: 2147483648", e.getMessage());
+    }
+
+    @Test
+    public void tokensKnowTheirLineAndColumn() {
+        TokenStream ts = scan("main {\n  // note\n\tx\u00e9 := 1;\r\n  y := 2; }");
+        ts.advance();
+        assertEquals(1, ts.line());
+        assertEquals(1, ts.column());
+        ts.advance();
+        ts.advance();
+        assertEquals(3, ts.line());
+        assertEquals(2, ts.column());
+        ts.advance();
+        // columns count characters, so the two-byte \u00e9 is one column
+        Token assign = ts.token();
+        assertEquals(3, assign.getLine());
+        assertEquals(5, assign.getColumn());
+        assertEquals(ts.start(), assign.getOffset());
+        ts.advance();
+        ts.advance();
+        ts.advance();
+        assertEquals(4, ts.line());
+        assertEquals(3, ts.column());
+        assertEquals("4:3", ts.lines().location(ts.start()));
+
+        // Tokens work out their position when it is read, not when scanned
+        TokenStream fresh = scan("main {\n x := 1;\n\n  y := 2; }");
+        Token main = fresh.nextToken();
+        for (int i = 0; i < 5; i++)
+            fresh.nextToken();
+        Token y = fresh.nextToken();
+        assertEquals("y", y.getValue());
+        assertEquals(4, y.getLine());
+        assertEquals(3, y.getColumn());
+        assertEquals(1, main.getLine());
+        assertEquals("main", main.getValue());
+    }
+
+    private static String kinds(TokenStream ts) {
+        StringBuilder sb = new StringBuilder();
+        while (ts.advance() != TokenKind.EOF)
+            sb.append(ts.kind()).append(' ').append(ts.text()).append('\n');
+        return sb.toString();
+    }
+
+    private static byte[] bytes(KaySource source) {
+        ByteBuffer b = source.bytes();
+        byte[] out = new byte[b.remaining()];
+        b.get(out);
+        return out;
+    }
+
+    @Test
+    public void everySourceScansAlike() throws IOException {
+        String text = "main { integer caf\u00e9; caf\u00e9 := 1; }";
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        byte[] padded = ("xx" + text + "yy").getBytes(StandardCharsets.UTF_8);
+        char[] chars = ("xx" + text + "yy").toCharArray();
+        String expected = kinds(scan(text));
+        assertEquals(expected, kinds(new TokenStream(KaySource.of(text))));
+        assertEquals(expected, kinds(new TokenStream(KaySource.of(new StringBuilder(text)))));
+        assertEquals(expected, kinds(new TokenStream(KaySource.of(chars, 2, text.length()))));
+        assertEquals(expected, kinds(new TokenStream(KaySource.of(padded, 2, utf8.length))));
+        assertEquals(expected, kinds(new TokenStream(KaySource.of(new ByteArrayInputStream(utf8)))));
+        assertEquals(expected, kinds(new TokenStream(KaySource.of(Channels.newChannel(new ByteArrayInputStream(utf8))))));
+    }
+
+    @Test
+    public void byteSourcesAreNotCopied() {
+        byte[] utf8 = "x := 1;".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer b = KaySource.of(utf8, 2, 2).bytes();
+        assertSame(utf8, b.array());
+        assertEquals(2, b.position());
+        assertEquals(4, b.limit());
+    }
+
+    @Test
+    public void textIsEncodedLikeGetBytes() {
+        String text = "a\u00e9\u20ac\ud83d\ude00 \ud83d x \ude00";
+        assertArrayEquals(text.getBytes(StandardCharsets.UTF_8), bytes(KaySource.of(text)));
+        assertArrayEquals(text.getBytes(StandardCharsets.UTF_8), bytes(KaySource.of(text.toCharArray(), 0, text.length())));
+    }
+
+    @Test
+    public void sourceBufferReusesItsArray() throws IOException {
+        SourceBuffer buffer = new SourceBuffer(16);
+        byte[] first = buffer.encode("main { }").bytes().array();
+        assertSame(first, buffer.encode("main { x := 1; }").bytes().array());
+        // A stream that trickles bytes in still reads to its end, growing
+        // the buffer as needed
+        String big = "main { " + "x := 1; ".repeat(100) + "}";
+        InputStream slow = new ByteArrayInputStream(big.getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 7));
+            }
+        };
+        KaySource s = buffer.read(slow);
+        assertEquals(big.length(), s.size());
+        assertEquals(kinds(scan(big)), kinds(new TokenStream(s)));
+    }
+
+    @Test
+    public void namedSourcesReportTheirName() {
+        KaySyntaxException e = assertThrows(KaySyntaxException.class,
+                () -> new ConcreteSyntax(KaySource.of("main {\n  x = 1; }").named("in.kay")).program());
+        assertEquals("in.kay", e.getFile());
+        assertEquals(2, e.getLine());
+        assertTrue(ConcreteSyntax.tryParse(KaySource.of("main { x := 1; }")).ok());
+    }
+
+    @Test
+    public void filesTooLargeToMapAreErrors(@TempDir Path dir) throws IOException {
+        // Sparse, so no disk space is used
+        Path big = dir.resolve("big.kay");
+        try (RandomAccessFile f = new RandomAccessFile(big.toFile(), "rw")) {
+            f.setLength(Integer.MAX_VALUE + 1L);
+        }
+        assertThrows(UncheckedIOException.class, () -> new TokenStream(big.toString()));
+        assertThrows(UncheckedIOException.class, () -> KaySource.file(big.toString()));
+        IOException e = assertThrows(IOException.class, () -> KaySource.file(big));
+        assertTrue(e.getMessage().startsWith("File too large to scan: "), e.getMessage());
+        // A missing file still scans as empty, as it always has
+        assertEquals(TokenKind.EOF, new TokenStream(dir.resolve("missing.kay").toString()).advance());
+    }
+}
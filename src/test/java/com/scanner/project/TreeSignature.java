@@ -0,0 +1,51 @@
+package com.scanner.project;
+
+// A string that tells two parses apart where display() cannot: the class
+// and span of every node, and optionally every variable's symbol id, for
+// tests that check a parser against the sequential one
+
+final class TreeSignature {
+
+    private TreeSignature() {
+    }
+
+    // display(), then every node of the body; ids adds symbol ids, which
+    // only parsers that number symbols the same way agree on
+    static String of(Program p, boolean ids) {
+        StringBuilder sb = new StringBuilder(p.display());
+        statement(p.body, ids, sb);
+        return sb.toString();
+    }
+
+    private static void statement(Statement s, boolean ids, StringBuilder sb) {
+        sb.append(s.getClass().getSimpleName()).append(Long.toHexString(s.span)).append(' ');
+        if (s instanceof Assignment) {
+            expression(((Assignment) s).target, ids, sb);
+            expression(((Assignment) s).source, ids, sb);
+        } else if (s instanceof Block) {
+            for (Object m : ((Block) s).blockmembers)
+                statement((Statement) m, ids, sb);
+        } else if (s instanceof Conditional) {
+            Conditional c = (Conditional) s;
+            expression(c.test, ids, sb);
+            statement(c.thenbranch, ids, sb);
+            if (c.elsebranch != null)
+                statement(c.elsebranch, ids, sb);
+        } else if (s instanceof Loop) {
+            expression(((Loop) s).test, ids, sb);
+            statement(((Loop) s).body, ids, sb);
+        }
+    }
+
+    private static void expression(Expression e, boolean ids, StringBuilder sb) {
+        sb.append(Long.toHexString(e.span)).append(' ');
+        if (e instanceof Variable && ids)
+            sb.append(((Variable) e).id).append('#').append(((Variable) e).symbol.id).append(' ');
+        else if (e instanceof Binary) {
+            expression(((Binary) e).term1, ids, sb);
+            expression(((Binary) e).term2, ids, sb);
+        } else if (e instanceof Unary) {
+            expression(((Unary) e).term, ids, sb);
+        }
+    }
+}
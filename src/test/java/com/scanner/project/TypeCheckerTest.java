@@ -0,0 +1,92 @@
+package com.scanner.project;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class TypeCheckerTest {
+
+    private static List<String> check(String source) {
+        return TypeChecker.check(KayPrograms.parse(source));
+    }
+
+    @Test
+    public void generatedProgramsAreWellTyped() {
+        for (long seed = 1; seed <= 100; seed++) {
+            String source = new KayGenerator(seed).nesting(3).expressionDepth(4).statements(50).generate();
+            assertEquals(List.of(), check(source), "seed " + seed);
+        }
+    }
+
+    @Test
+    public void reportsDuplicatesAndUndeclaredVariables() {
+        assertEquals(List.of("1:24: Type error - Duplicate declaration: X",
+                        "1:27: Type error - Undeclared variable: y",
+                        "1:44: Type error - Undeclared variable: z"),
+                check("main { integer x; bool X; y := x + 1; x := z; }"));
+    }
+
+    @Test
+    public void reportsOperandMismatches() {
+        assertEquals(List.of("1:32: Type error - Operator + expects integer operands, saw integer and bool",
+                        "1:44: Type error - Operator && expects bool operands, saw integer and bool",
+                        "1:57: Type error - Operator < expects integer operands, saw bool and bool",
+                        "1:70: Type error - Operator == expects operands of the same type, saw integer and bool"),
+                check("main { integer i; bool b; i := i + b; b := i && b; b := b < b; b := (i == b) || b; }"));
+    }
+
+    @Test
+    public void reportsAssignmentAndTestMismatches() {
+        assertEquals(List.of("1:27: Type error - Cannot assign bool to integer variable: i",
+                        "1:43: Type error - Test of if must be bool, saw integer",
+                        "1:73: Type error - Test of while must be bool, saw integer"),
+                check("main { integer i; bool b; i := i < 1; if (i) { b := b == True; }"
+                        + " while (i + 1) { i := i - 1; } }"));
+    }
+
+    @Test
+    public void errorsDoNotCascade() {
+        assertEquals(List.of("1:34: Type error - Undeclared variable: q"),
+                check("main { integer i; bool b; b := ((q + 1) * 2) < i; }"));
+    }
+
+    @Test
+    public void handBuiltVariablesLeaveTheParsersTableAlone() {
+        Program p = KayPrograms.parse("main { integer i; bool b; i := 1; b := True; }");
+        SymbolTable table = ((Declaration) p.decpart.elementAt(0)).v.symbol.table;
+        int size = table.size();
+        Assignment first = (Assignment) p.body.blockmembers.elementAt(0);
+        Assignment second = (Assignment) p.body.blockmembers.elementAt(1);
+        first.target = new Variable();
+        first.target.id = "I";
+        second.target = new Variable();
+        second.target.id = "q";
+        assertEquals(List.of("Type error - Undeclared variable: q"), TypeChecker.check(p));
+        assertEquals(size, table.size());
+    }
+
+    @Test
+    public void variablesFromOtherTablesMatchByName() {
+        Program p = KayPrograms.parse("main { integer i; bool b; i := 1; }");
+        p.body = KayPrograms.parse("main { integer x, y, B; B := 1; }").body;
+        p.lines = null;
+        assertEquals(List.of("Type error - Cannot assign integer to bool variable: B"), TypeChecker.check(p));
+
+        // One declaration built by hand, the other parsed
+        p = KayPrograms.parse("main { integer i; bool b; i := 1; b := i; }");
+        Declaration first = (Declaration) p.decpart.elementAt(0);
+        first.v = new Variable();
+        first.v.id = "i";
+        p.lines = null;
+        assertEquals(List.of("Type error - Cannot assign integer to bool variable: b"), TypeChecker.check(p));
+    }
+
+    @Test
+    public void handBuiltProgramsHaveNoPositions() {
+        Program p = KayPrograms.parse("main { integer i; i := j; }");
+        p.lines = null;
+        assertEquals(List.of("Type error - Undeclared variable: j"), TypeChecker.check(p));
+    }
+}